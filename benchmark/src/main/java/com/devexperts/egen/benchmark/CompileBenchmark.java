@@ -0,0 +1,119 @@
+package com.devexperts.egen.benchmark;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures compilation time of a synthetic project in-process with and without EGEN processor.
+ * Per-class processing time is available from the processor itself, see -Areport option.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {
+        "-XX:+IgnoreUnrecognizedVMOptions", // JDK 8 knows nothing about modules
+        "--add-opens=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+        "--add-opens=jdk.compiler/com.sun.tools.javac.comp=ALL-UNNAMED",
+        "--add-opens=jdk.compiler/com.sun.tools.javac.model=ALL-UNNAMED",
+        "--add-opens=jdk.compiler/com.sun.tools.javac.processing=ALL-UNNAMED",
+        "--add-opens=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+        "--add-opens=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED"})
+@State(Scope.Benchmark)
+public class CompileBenchmark {
+    private static final String PROCESSOR = "com.devexperts.egen.processor.AutoSerializableProcessor";
+    private static final String PROCESSING_EXCEPTION = "resulted an exception"; // warning of failed class processing
+
+    @Param({"200", "2000"})
+    int classes;
+
+    @Param({"true", "false"})
+    boolean processor;
+
+    private JavaCompiler compiler;
+    private Path sourceDir;
+    private Path outputDir;
+    private List<File> sources;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+            throw new IllegalStateException("JDK is required to run compilation benchmark");
+        sourceDir = Files.createTempDirectory("egen-src");
+        sources = SyntheticProject.generate(sourceDir.toFile(), classes);
+    }
+
+    @Setup(Level.Invocation)
+    public void cleanOutput() throws IOException {
+        outputDir = Files.createTempDirectory("egen-out");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteOutput() throws IOException {
+        delete(outputDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSources() throws IOException {
+        delete(sourceDir);
+    }
+
+    @Benchmark
+    public boolean compile() throws IOException {
+        String classPath = System.getProperty("java.class.path");
+        List<String> options = new ArrayList<>(Arrays.asList("-d", outputDir.toString(), "-classpath", classPath,
+                "-Xmaxwarns", String.valueOf(Integer.MAX_VALUE))); // no -nowarn: processor failures are reported as warnings
+        if (processor)
+            options.addAll(Arrays.asList("-processorpath", classPath, "-processor", PROCESSOR));
+        else
+            options.add("-proc:none");
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            Boolean success = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(sources)).call();
+            if (!success)
+                throw new IllegalStateException("Compilation failed: " + diagnostics.getDiagnostics());
+            checkDiagnostics(diagnostics.getDiagnostics());
+            return success;
+        }
+    }
+
+    private static void checkDiagnostics(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+            String message = d.getMessage(Locale.ROOT);
+            if (d.getKind() == Diagnostic.Kind.ERROR || message.contains(PROCESSING_EXCEPTION))
+                throw new IllegalStateException("Processing failed: " + message);
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        if (dir == null)
+            return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.devexperts.egen.benchmark;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import com.devexperts.egen.processor.IOUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures compact and delta array codecs of {@link IOUtils} for streams and buffers across value distributions
+ * and array sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IOUtilsBenchmark {
+    private static final String COMPACT = "compact";
+    private static final String DELTA = "delta";
+
+    private static final String SMALL = "small";
+    private static final String RANDOM = "random";
+    private static final String MONOTONIC = "monotonic";
+    private static final String NEGATIVE_DELTAS = "negative-deltas";
+
+    @Param({COMPACT, DELTA})
+    String codec;
+
+    @Param({SMALL, RANDOM, MONOTONIC, NEGATIVE_DELTAS})
+    String distribution;
+
+    @Param({"16", "1024", "65536"})
+    int size;
+
+    private int[] ints;
+    private long[] longs;
+    private byte[] intBytes;
+    private byte[] longBytes;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(size);
+        ints = ints(random, distribution, size);
+        longs = longs(random, distribution, size);
+        intBytes = write(ints);
+        longBytes = write(longs);
+        buffer = ByteBuffer.allocate(Math.max(intBytes.length, longBytes.length) + 16);
+    }
+
+    @Benchmark
+    public int writeInts() throws IOException {
+        bytes.reset();
+        writeInts(out, ints);
+        return bytes.size();
+    }
+
+    @Benchmark
+    public int[] readInts() throws IOException {
+        return readInts(new DataInputStream(new ByteArrayInputStream(intBytes)));
+    }
+
+    @Benchmark
+    public int writeLongs() throws IOException {
+        bytes.reset();
+        writeLongs(out, longs);
+        return bytes.size();
+    }
+
+    @Benchmark
+    public long[] readLongs() throws IOException {
+        return readLongs(new DataInputStream(new ByteArrayInputStream(longBytes)));
+    }
+
+    @Benchmark
+    public int writeIntsToBuffer() {
+        buffer.clear();
+        writeInts(buffer, ints);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int[] readIntsFromBuffer() {
+        return readInts(ByteBuffer.wrap(intBytes));
+    }
+
+    @Benchmark
+    public int writeLongsToBuffer() {
+        buffer.clear();
+        writeLongs(buffer, longs);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public long[] readLongsFromBuffer() {
+        return readLongs(ByteBuffer.wrap(longBytes));
+    }
+
+    private byte[] write(int[] v) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeInts(new DataOutputStream(bytes), v);
+        return bytes.toByteArray();
+    }
+
+    private byte[] write(long[] v) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeLongs(new DataOutputStream(bytes), v);
+        return bytes.toByteArray();
+    }
+
+    private void writeInts(DataOutput out, int[] v) throws IOException {
+        if (DELTA.equals(codec))
+            IOUtils.writeDeltaIntArray(out, v);
+        else
+            IOUtils.writeCompactIntArray(out, v);
+    }
+
+    private int[] readInts(DataInput in) throws IOException {
+        return DELTA.equals(codec) ? IOUtils.readDeltaIntArray(in) : IOUtils.readCompactIntArray(in);
+    }
+
+    private void writeLongs(DataOutput out, long[] v) throws IOException {
+        if (DELTA.equals(codec))
+            IOUtils.writeDeltaLongArray(out, v);
+        else
+            IOUtils.writeCompactLongArray(out, v);
+    }
+
+    private long[] readLongs(DataInput in) throws IOException {
+        return DELTA.equals(codec) ? IOUtils.readDeltaLongArray(in) : IOUtils.readCompactLongArray(in);
+    }
+
+    private void writeInts(ByteBuffer out, int[] v) {
+        if (DELTA.equals(codec))
+            IOUtils.writeDeltaIntArray(out, v);
+        else
+            IOUtils.writeCompactIntArray(out, v);
+    }
+
+    private int[] readInts(ByteBuffer in) {
+        return DELTA.equals(codec) ? IOUtils.readDeltaIntArray(in) : IOUtils.readCompactIntArray(in);
+    }
+
+    private void writeLongs(ByteBuffer out, long[] v) {
+        if (DELTA.equals(codec))
+            IOUtils.writeDeltaLongArray(out, v);
+        else
+            IOUtils.writeCompactLongArray(out, v);
+    }
+
+    private long[] readLongs(ByteBuffer in) {
+        return DELTA.equals(codec) ? IOUtils.readDeltaLongArray(in) : IOUtils.readCompactLongArray(in);
+    }
+
+    private static int[] ints(Random random, String distribution, int length) {
+        // monotonic and negative deltas series stay within int range for benchmarked sizes
+        long[] longs = values(random, distribution, length, 100000000);
+        int[] v = new int[length];
+        for (int i = 0; i < length; i++)
+            v[i] = (int) longs[i];
+        return v;
+    }
+
+    private static long[] longs(Random random, String distribution, int length) {
+        return values(random, distribution, length, 1580000000000L);
+    }
+
+    private static long[] values(Random random, String distribution, int length, long start) {
+        long[] v = new long[length];
+        long value = start;
+        for (int i = 0; i < length; i++) {
+            switch (distribution) {
+                case SMALL:
+                    v[i] = random.nextInt(64);
+                    break;
+                case RANDOM:
+                    v[i] = random.nextLong();
+                    break;
+                case MONOTONIC:
+                    value += random.nextInt(1000);
+                    v[i] = value;
+                    break;
+                case NEGATIVE_DELTAS:
+                    value -= random.nextInt(1000);
+                    v[i] = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException(distribution);
+            }
+        }
+        return v;
+    }
+}
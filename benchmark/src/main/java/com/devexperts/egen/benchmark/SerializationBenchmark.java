@@ -0,0 +1,125 @@
+package com.devexperts.egen.benchmark;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import com.devexperts.egen.benchmark.model.Models;
+import com.devexperts.egen.processor.EgenObjectInputStream;
+import com.devexperts.egen.processor.EgenObjectOutputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares EGEN-generated serialization with plain Serializable and hand-written Externalizable equivalents.
+ * Serialized size is reported as serializedBytes counter, allocation rate - by running with -prof gc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+    private static final String EGEN = "egen";
+    private static final String EGEN_STREAM = "egen-stream";
+    private static final String PLAIN = "plain";
+    private static final String EXTERNALIZABLE = "externalizable";
+
+    @Param({EGEN, EGEN_STREAM, PLAIN, EXTERNALIZABLE})
+    String variant;
+
+    @Param({Models.QUOTE, Models.BOOK})
+    String shape;
+
+    private Object object;
+    private byte[] bytes;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+
+    /**
+     * Serialized size of the object (including stream header), assigned rather than accumulated.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Size {
+        public long serializedBytes;
+    }
+
+    @Setup
+    public void setup() throws IOException, ClassNotFoundException {
+        switch (variant) {
+            case EGEN:
+            case EGEN_STREAM:
+                object = Models.egen(shape);
+                break;
+            case PLAIN:
+                object = Models.plain(shape);
+                break;
+            case EXTERNALIZABLE:
+                object = Models.external(shape);
+                break;
+            default:
+                throw new IllegalArgumentException(variant);
+        }
+        bytes = serialize(object);
+        if (!Arrays.equals(bytes, serialize(deserialize(bytes))))
+            throw new IllegalStateException("Round trip of " + variant + " " + shape + " changes serialized form");
+    }
+
+    @Benchmark
+    public int write(Size size) throws IOException {
+        buffer.reset();
+        try (ObjectOutputStream out = newOutput(buffer)) {
+            out.writeObject(object);
+        }
+        size.serializedBytes = buffer.size();
+        return buffer.size();
+    }
+
+    @Benchmark
+    public Object read() throws IOException, ClassNotFoundException {
+        return deserialize(bytes);
+    }
+
+    @Benchmark
+    public Object roundTrip() throws IOException, ClassNotFoundException {
+        buffer.reset();
+        try (ObjectOutputStream out = newOutput(buffer)) {
+            out.writeObject(object);
+        }
+        return deserialize(buffer.toByteArray());
+    }
+
+    private byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = newOutput(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = newInput(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    private ObjectOutputStream newOutput(OutputStream out) throws IOException {
+        return EGEN_STREAM.equals(variant) ? new EgenObjectOutputStream(out) : new ObjectOutputStream(out);
+    }
+
+    private ObjectInputStream newInput(InputStream in) throws IOException {
+        return EGEN_STREAM.equals(variant) ? new EgenObjectInputStream(in) : new ObjectInputStream(in);
+    }
+}
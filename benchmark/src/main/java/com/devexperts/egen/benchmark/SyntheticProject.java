@@ -0,0 +1,76 @@
+package com.devexperts.egen.benchmark;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates sources of a project with given number of @AutoSerializable classes. Every class mixes @Compact, @Delta,
+ * @PresenceBit and plain fields, and every fourth class inlines the previous one.
+ */
+class SyntheticProject {
+    static final String PACKAGE = "synthetic";
+
+    private SyntheticProject() {
+    }
+
+    static List<File> generate(File root, int classes) throws IOException {
+        File dir = new File(root, PACKAGE);
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Can't create " + dir);
+
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < classes; i++) {
+            File file = new File(dir, "Dto" + i + ".java");
+            try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+                writeClass(out, i);
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void writeClass(PrintWriter out, int i) {
+        out.println("package " + PACKAGE + ";");
+        out.println();
+        out.println("import com.devexperts.egen.processor.annotations.AutoSerializable;");
+        out.println("import com.devexperts.egen.processor.annotations.field.*;");
+        out.println();
+        out.println("import java.util.ArrayList;");
+        out.println();
+        out.println("@AutoSerializable");
+        out.println("public class Dto" + i + " implements java.io.Serializable {");
+        out.println("    @Compact int id;");
+        out.println("    @Compact long time;");
+        out.println("    @Compact String symbol;");
+        out.println("    @Delta(\"time\") long updateTime;");
+        out.println("    @Delta(\"100\") int level;");
+        out.println("    @Delta int[] sizes;");
+        out.println("    @PresenceBit(value = \"0\", groupId = 1) int bidSize;");
+        out.println("    @PresenceBit(value = \"0\", groupId = 1) int askSize;");
+        out.println("    @PresenceBit(value = \"NaN\") double price;");
+        out.println("    @Compact ArrayList<String> tags;");
+        out.println("    boolean active;");
+        out.println("    double plain;");
+        if (i % 4 == 3)
+            out.println("    @Inline Dto" + (i - 1) + " previous;");
+        out.println();
+        out.println("    public Dto" + i + "() {");
+        out.println("    }");
+        out.println("}");
+    }
+}
@@ -0,0 +1,32 @@
+package com.devexperts.egen.benchmark.model;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import com.devexperts.egen.processor.annotations.AutoSerializable;
+import com.devexperts.egen.processor.annotations.field.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+@AutoSerializable
+public class EgenBook implements Serializable {
+    @Compact String symbol;
+    @Delta int[] prices;
+    @Compact ArrayList<Long> sizes;
+    @Compact TreeMap<String, Long> volumes;
+    @Inline EgenQuote best;
+
+    public EgenBook() {
+    }
+}
@@ -0,0 +1,28 @@
+package com.devexperts.egen.benchmark.model;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import com.devexperts.egen.processor.annotations.AutoSerializable;
+import com.devexperts.egen.processor.annotations.field.*;
+
+@AutoSerializable
+public class EgenQuote extends EgenEvent {
+    @Decimal double bidPrice;
+    @Decimal double askPrice;
+    @PresenceBit(value = "0", groupId = 1) long bidSize;
+    @PresenceBit(value = "0", groupId = 1) long askSize;
+    @PresenceBit(value = "0") int sequence;
+
+    public EgenQuote() {
+    }
+}
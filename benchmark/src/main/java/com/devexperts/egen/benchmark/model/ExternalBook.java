@@ -0,0 +1,67 @@
+package com.devexperts.egen.benchmark.model;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ExternalBook implements Externalizable {
+    String symbol;
+    int[] prices;
+    ArrayList<Long> sizes;
+    TreeMap<String, Long> volumes;
+    ExternalQuote best;
+
+    public ExternalBook() {
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeUTF(symbol);
+        out.writeInt(prices.length);
+        for (int price : prices)
+            out.writeInt(price);
+        out.writeInt(sizes.size());
+        for (long size : sizes)
+            out.writeLong(size);
+        out.writeInt(volumes.size());
+        for (Map.Entry<String, Long> e : volumes.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeLong(e.getValue());
+        }
+        best.writeExternal(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        symbol = in.readUTF();
+        prices = new int[in.readInt()];
+        for (int i = 0; i < prices.length; i++)
+            prices[i] = in.readInt();
+        int size = in.readInt();
+        sizes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            sizes.add(in.readLong());
+        size = in.readInt();
+        volumes = new TreeMap<>();
+        for (int i = 0; i < size; i++)
+            volumes.put(in.readUTF(), in.readLong());
+        best = new ExternalQuote();
+        best.readExternal(in);
+    }
+}
@@ -0,0 +1,38 @@
+package com.devexperts.egen.benchmark.model;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+public class ExternalEvent implements Externalizable {
+    String symbol;
+    long time;
+
+    public ExternalEvent() {
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeUTF(symbol);
+        out.writeLong(time);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        symbol = in.readUTF();
+        time = in.readLong();
+    }
+}
@@ -0,0 +1,48 @@
+package com.devexperts.egen.benchmark.model;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+public class ExternalQuote extends ExternalEvent {
+    double bidPrice;
+    double askPrice;
+    long bidSize;
+    long askSize;
+    int sequence;
+
+    public ExternalQuote() {
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        super.writeExternal(out);
+        out.writeDouble(bidPrice);
+        out.writeDouble(askPrice);
+        out.writeLong(bidSize);
+        out.writeLong(askSize);
+        out.writeInt(sequence);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        super.readExternal(in);
+        bidPrice = in.readDouble();
+        askPrice = in.readDouble();
+        bidSize = in.readLong();
+        askSize = in.readLong();
+        sequence = in.readInt();
+    }
+}
@@ -0,0 +1,131 @@
+package com.devexperts.egen.benchmark.model;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+/**
+ * Creates instances of equivalent models with the same content: EGEN-generated, plain Serializable and hand-written
+ * Externalizable ones. Quote is a two-level inheritance chain with presence groups, book has arrays, collections
+ * and maps and contains a quote.
+ */
+public class Models {
+    public static final String QUOTE = "quote";
+    public static final String BOOK = "book";
+
+    private static final int DEPTH = 20;
+    private static final String[] EXCHANGES = {"NASDAQ", "NYSE", "ARCA", "BATS", "IEX"};
+
+    private Models() {
+    }
+
+    public static Object egen(String shape) {
+        return BOOK.equals(shape) ? egenBook() : egenQuote();
+    }
+
+    public static Object plain(String shape) {
+        return BOOK.equals(shape) ? plainBook() : plainQuote();
+    }
+
+    public static Object external(String shape) {
+        return BOOK.equals(shape) ? externalBook() : externalQuote();
+    }
+
+    private static EgenQuote egenQuote() {
+        EgenQuote quote = new EgenQuote();
+        quote.symbol = "AAPL";
+        quote.time = 1580000000000L;
+        quote.bidPrice = 318.73;
+        quote.askPrice = 318.81;
+        quote.bidSize = 300;
+        quote.askSize = 0;
+        quote.sequence = 12;
+        return quote;
+    }
+
+    private static PlainQuote plainQuote() {
+        PlainQuote quote = new PlainQuote();
+        quote.symbol = "AAPL";
+        quote.time = 1580000000000L;
+        quote.bidPrice = 318.73;
+        quote.askPrice = 318.81;
+        quote.bidSize = 300;
+        quote.askSize = 0;
+        quote.sequence = 12;
+        return quote;
+    }
+
+    private static ExternalQuote externalQuote() {
+        ExternalQuote quote = new ExternalQuote();
+        quote.symbol = "AAPL";
+        quote.time = 1580000000000L;
+        quote.bidPrice = 318.73;
+        quote.askPrice = 318.81;
+        quote.bidSize = 300;
+        quote.askSize = 0;
+        quote.sequence = 12;
+        return quote;
+    }
+
+    private static EgenBook egenBook() {
+        EgenBook book = new EgenBook();
+        book.symbol = "AAPL";
+        book.prices = prices();
+        book.sizes = sizes();
+        book.volumes = volumes();
+        book.best = egenQuote();
+        return book;
+    }
+
+    private static PlainBook plainBook() {
+        PlainBook book = new PlainBook();
+        book.symbol = "AAPL";
+        book.prices = prices();
+        book.sizes = sizes();
+        book.volumes = volumes();
+        book.best = plainQuote();
+        return book;
+    }
+
+    private static ExternalBook externalBook() {
+        ExternalBook book = new ExternalBook();
+        book.symbol = "AAPL";
+        book.prices = prices();
+        book.sizes = sizes();
+        book.volumes = volumes();
+        book.best = externalQuote();
+        return book;
+    }
+
+    private static int[] prices() {
+        int[] prices = new int[DEPTH];
+        for (int i = 0; i < DEPTH; i++)
+            prices[i] = 318730 - i * 10;
+        return prices;
+    }
+
+    private static ArrayList<Long> sizes() {
+        ArrayList<Long> sizes = new ArrayList<>();
+        for (int i = 0; i < DEPTH; i++)
+            sizes.add(100L * (i % 7 + 1));
+        return sizes;
+    }
+
+    private static TreeMap<String, Long> volumes() {
+        TreeMap<String, Long> volumes = new TreeMap<>();
+        for (int i = 0; i < EXCHANGES.length; i++)
+            volumes.put(EXCHANGES[i], 1000000L * (i + 1));
+        return volumes;
+    }
+}
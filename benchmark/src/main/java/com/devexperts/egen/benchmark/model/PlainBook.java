@@ -0,0 +1,28 @@
+package com.devexperts.egen.benchmark.model;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+public class PlainBook implements Serializable {
+    String symbol;
+    int[] prices;
+    ArrayList<Long> sizes;
+    TreeMap<String, Long> volumes;
+    PlainQuote best;
+
+    public PlainBook() {
+    }
+}
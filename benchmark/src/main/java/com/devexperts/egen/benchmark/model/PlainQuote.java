@@ -0,0 +1,24 @@
+package com.devexperts.egen.benchmark.model;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+public class PlainQuote extends PlainEvent {
+    double bidPrice;
+    double askPrice;
+    long bidSize;
+    long askSize;
+    int sequence;
+
+    public PlainQuote() {
+    }
+}
@@ -12,8 +12,11 @@ package com.devexperts.egen.processor;
  * #L%
  */
 
+import com.devexperts.egen.processor.tools.InvalidDeclarationException;
 import com.devexperts.egen.processor.tools.MethodBlockFactory;
+import com.sun.tools.javac.code.Attribute;
 import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.TypeTag;
 import com.sun.tools.javac.model.JavacElements;
 import com.sun.tools.javac.processing.JavacProcessingEnvironment;
@@ -26,10 +29,15 @@ import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import static com.sun.tools.javac.tree.JCTree.*;
@@ -37,17 +45,23 @@ import static com.sun.tools.javac.tree.JCTree.*;
 
 @SupportedAnnotationTypes(value = {AutoSerializableProcessor.ANNOTATION_TYPE})
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
-@SupportedOptions({"ordinals", "maps", "collections"})
+@SupportedOptions({"ordinals", "maps", "collections", "runtime", "canonicalize", "codecs", "report"})
 public class AutoSerializableProcessor extends AbstractProcessor {
     public static final String ANNOTATION_TYPE = "com.devexperts.egen.processor.annotations.AutoSerializable";
-    private static final HashSet<String> VAR_ANNOTATION_LIST = new HashSet<>(Arrays.asList("Compact", "Delta", "Inline", "Ordinal", "PresenceBit"));
+    public static final String EXTERNALIZABLE = "externalizable";
+    public static final String FIELD_ANNOTATION_PACKAGE = "com.devexperts.egen.processor.annotations.field.";
+    private static final HashSet<String> VAR_ANNOTATION_LIST = new HashSet<>(Arrays.asList("Compact", "Delta", "Inline", "Ordinal", "PresenceBit", "XorCompressed", "Dictionary"));
     private JavacProcessingEnvironment javacProcessingEnv;
     private TreeMaker maker;
 
-    private static Set<? extends Element> classes; // list of processing classes
-    private static String ordinals; // list of enumerable clases that should be marshaled as their .code() integer
-    private static String maps; // list of classes that should be considered as maps
-    private static String collections; // list of classes that should be considered as collections
+    private static Set<String> ordinals; // enumerable clases that should be marshaled as their .code() integer
+    private static Set<String> maps; // classes that should be considered as maps
+    private static Set<String> collections; // classes that should be considered as collections
+    private static String runtime; // "egen" (default) or "dxlib" - library with compact encodings used by generated code
+    private static boolean canonicalize; // whether all compact strings are read through the canonicalizing cache
+    private static boolean codecs; // whether static methods are generated into companion <Name>EgenCodec source files
+    private static String report; // file for per-class processing time and generated code, no report if null
+    private static final Map<String, JCVariableDecl> staticFields = new LinkedHashMap<>(); // lookup tables of current class
     private JavacElements utils;
     private JCClassDecl classDecl;
 
@@ -60,6 +74,7 @@ public class AutoSerializableProcessor extends AbstractProcessor {
 
         this.javacProcessingEnv = getJavacProcessingEnvironment(procEnv);
         this.maker = TreeMaker.instance(javacProcessingEnv.getContext());
+        MethodBlockFactory.clearBufferCodecProblems();
     }
 
     @Override
@@ -71,114 +86,209 @@ public class AutoSerializableProcessor extends AbstractProcessor {
         final TypeElement annotation = javacProcessingEnv.getElementUtils().getTypeElement(ANNOTATION_TYPE);
 
         if (annotation != null) {
-            classes = roundEnv.getElementsAnnotatedWith(annotation);
+            Set<? extends Element> classes = roundEnv.getElementsAnnotatedWith(annotation);
 
             fetchCompilerOptions();
 
             utils = javacProcessingEnv.getElementUtils();
-            PrintWriter logPw = null; // TODO: sane logging
+            PrintWriter logPw = null;
+            long roundStart = System.nanoTime();
             try {
-                logPw = new PrintWriter("egen_output.txt");
+                if (report != null)
+                    logPw = new PrintWriter(report);
 
                 for (final Element e : classes) {
-                    JCTree classNode = utils.getTree(e);
-
-                    classDecl = (JCClassDecl) classNode;
-                    filterClass(classDecl);
+                    try {
+                        processClass(e, logPw);
+                    } catch (InvalidDeclarationException ex) {
+                        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "EGEN: " + ex.getMessage(),
+                                ex.getElement() != null ? ex.getElement() : e, ex.getAnnotation());
+                        if (logPw != null)
+                            logPw.println("EGEN: Processing of " + e.getSimpleName() + " failed: " + ex.getMessage());
+                    } catch (Throwable t) {
+                        reportException(e.getSimpleName().toString(), t, logPw);
+                    }
+                }
+                if (logPw != null)
+                    logPw.println("EGEN: " + classes.size() + " classes processed in " + (System.nanoTime() - roundStart) / 1000 + " us.");
+            } catch (Throwable t) {
+                reportException("classes", t, logPw);
+            } finally {
+                if (logPw != null) {
+                    logPw.close();
+                }
+            }
 
-                    /* This a dirty hack: for unknown reason, compiler's
-                    com.sun.tools.javac.comp.Flow.AssignAnalyzer.visitMethodDef() internal check fails without this.
-                    Intervening in the unsupported API sometimes hurts. */
-                    maker.pos = Math.max(maker.pos, classDecl.getModifiers().getStartPosition());
+            return true;
+        }
 
-                    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "EGEN: Class " + classDecl.name +
-                            " custom serialization protocol is being automatically implemented.");
+        return false;
+    }
 
-                    logPw.println("EGEN: Class " + classDecl.name +
-                            " custom serialization protocol is being automatically implemented.");
+    /**
+     * Appends generated methods to the class or to its codec class.
+     * @throws InvalidDeclarationException if EGEN annotations of the class or its fields can't be applied
+     */
+    private void processClass(Element e, PrintWriter logPw) throws IOException {
+        long classStart = System.nanoTime();
+        JCTree classNode = utils.getTree(e);
+
+        classDecl = (JCClassDecl) classNode;
+        if (codecs && !checkCodecAccess(classDecl))
+            return;
+        filterClass(classDecl);
+        staticFields.clear();
+
+        /* This a dirty hack: for unknown reason, compiler's
+        com.sun.tools.javac.comp.Flow.AssignAnalyzer.visitMethodDef() internal check fails without this.
+        Intervening in the unsupported API sometimes hurts. */
+        maker.pos = Math.max(maker.pos, classDecl.getModifiers().getStartPosition());
+
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "EGEN: Class " + classDecl.name +
+                " custom serialization protocol is being automatically implemented.");
+
+        if (logPw != null)
+            logPw.println("EGEN: Class " + classDecl.name +
+                    " custom serialization protocol is being automatically implemented.");
+
+        JCExpression ioExceptionClass = makeSelectExpr("java.io.IOException");
+        JCExpression classNotFoundExceptionClass = makeSelectExpr("java.lang.ClassNotFoundException");
+        JCExpression objectOutputClass = makeSelectExpr("java.io.ObjectOutputStream");
+        JCExpression objectInputClass = makeSelectExpr("java.io.ObjectInputStream");
+
+        boolean externalizable = isClassOptionEnabled(classDecl, EXTERNALIZABLE);
+        if (externalizable && (classDecl.mods.flags & Flags.FINAL) == 0) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "EGEN: @AutoSerializable(externalizable = true) is allowed for final classes only", e);
+            externalizable = false;
+        }
 
-                    JCExpression ioExceptionClass = makeSelectExpr("java.io.IOException");
-                    JCExpression classNotFoundExceptionClass = makeSelectExpr("java.lang.ClassNotFoundException");
-                    JCExpression objectOutputClass = makeSelectExpr("java.io.ObjectOutputStream");
-                    JCExpression objectInputClass = makeSelectExpr("java.io.ObjectInputStream");
+        classDecl.implementing = classDecl.implementing.append(
+                makeSelectExpr(externalizable ? "java.io.Externalizable" : "java.io.Serializable"));
 
-                    classDecl.implementing = classDecl.implementing.append(makeSelectExpr("java.io.Serializable"));
+        JCModifiers privateModifiers = maker.Modifiers(Flags.PRIVATE , List.<JCAnnotation>nil());
+        JCModifiers publicStaticModifiers = maker.Modifiers(Flags.PUBLIC | Flags.STATIC, List.<JCAnnotation>nil());
 
-                    JCModifiers privateModifiers = maker.Modifiers(Flags.PRIVATE , List.<JCAnnotation>nil());
-                    JCModifiers publicStaticModifiers = maker.Modifiers(Flags.PUBLIC | Flags.STATIC, List.<JCAnnotation>nil());
+        MethodBlockFactory methodBlockFactory = new MethodBlockFactory(maker, utils, classDecl);
 
-                    MethodBlockFactory methodBlockFactory = new MethodBlockFactory(maker, utils, classDecl);
+        JCBlock writeContentsBlock = methodBlockFactory.writeContentsBlock();
+        JCMethodDecl writeContentsMethod = getWriteContentsMethod(utils, ioExceptionClass,
+                publicStaticModifiers, objectOutputClass, writeContentsBlock);
 
-                    JCBlock writeContentsBlock = methodBlockFactory.writeContentsBlock();
-                    JCMethodDecl writeContentsMethod = getWriteContentsMethod(utils, ioExceptionClass,
-                            publicStaticModifiers, objectOutputClass, writeContentsBlock);
+        JCBlock readContentsBlock = methodBlockFactory.readContentsBlock();
+        JCMethodDecl readContentsMethod = getReadContentsMethod(utils, ioExceptionClass,
+                classNotFoundExceptionClass, publicStaticModifiers, objectInputClass, readContentsBlock);
 
-                    JCBlock readContentsBlock = methodBlockFactory.readContentsBlock();
-                    JCMethodDecl readContentsMethod = getReadContentsMethod(utils, ioExceptionClass,
-                            classNotFoundExceptionClass, publicStaticModifiers, objectInputClass, readContentsBlock);
+        if (methodBlockFactory.isFlatten())
+            addStaticField(methodBlockFactory.flattenMarkerField());
 
-                    JCBlock writeObjectBlock = methodBlockFactory.writeObjectBlock();
-                    JCMethodDecl writeObjectMethod = getWriteObjectMethod(utils, ioExceptionClass, privateModifiers,
-                            objectOutputClass, writeObjectBlock);
+        JCBlock writeObjectBlock = methodBlockFactory.writeObjectBlock();
+        JCMethodDecl writeObjectMethod = getWriteObjectMethod(utils, ioExceptionClass, privateModifiers,
+                objectOutputClass, writeObjectBlock);
 
-                    JCBlock readObjectBlock = methodBlockFactory.readObjectBlock();
-                    JCMethodDecl readObjectMethod = getReadObjectMethod(utils, ioExceptionClass, classNotFoundExceptionClass,
-                            privateModifiers, objectInputClass, readObjectBlock);
+        JCBlock readObjectBlock = methodBlockFactory.readObjectBlock();
+        JCMethodDecl readObjectMethod = getReadObjectMethod(utils, ioExceptionClass, classNotFoundExceptionClass,
+                privateModifiers, objectInputClass, readObjectBlock);
 
-                    JCBlock writeInlineBlock = methodBlockFactory.writeInlineBlock();
-                    JCMethodDecl writeInlineMethod = getWriteInlineMethod(utils, ioExceptionClass, publicStaticModifiers,
-                            objectOutputClass, writeInlineBlock);
+        JCBlock writeInlineBlock = methodBlockFactory.writeInlineBlock();
+        JCMethodDecl writeInlineMethod = getWriteInlineMethod(utils, ioExceptionClass, publicStaticModifiers,
+                objectOutputClass, writeInlineBlock);
 
-                    JCBlock readInlineBlock = methodBlockFactory.readInlineBlock();
-                    JCMethodDecl readInlineMethod = getReadInlineMethod(utils, ioExceptionClass, classNotFoundExceptionClass,
-                            publicStaticModifiers, objectInputClass, readInlineBlock);
+        JCBlock readInlineBlock = methodBlockFactory.readInlineBlock();
+        JCMethodDecl readInlineMethod = getReadInlineMethod(utils, ioExceptionClass, classNotFoundExceptionClass,
+                publicStaticModifiers, objectInputClass, readInlineBlock);
 
-                    JCBlock prepareFlagsBlock = methodBlockFactory.prepareFlagsBlock();
-                    JCMethodDecl prepareFlagsMethod = getPrepareFlagsMethod(utils, prepareFlagsBlock);
+        List<JCTree> staticMethods = List.of(writeContentsMethod, writeInlineMethod, readContentsMethod,
+                readInlineMethod);
 
-                    classDecl.defs = classDecl.defs.append(writeContentsMethod);
-                    classDecl.defs = classDecl.defs.append(writeObjectMethod);
-                    classDecl.defs = classDecl.defs.append(writeInlineMethod);
+        String bufferCodecProblem = methodBlockFactory.bufferCodecProblem();
+        if (bufferCodecProblem == null) {
+            JCExpression byteBufferClass = makeSelectExpr("java.nio.ByteBuffer");
 
-                    classDecl.defs = classDecl.defs.append(readContentsMethod);
-                    classDecl.defs = classDecl.defs.append(readObjectMethod);
-                    classDecl.defs = classDecl.defs.append(readInlineMethod);
+            JCBlock writeToBlock = methodBlockFactory.writeToBlock();
+            JCMethodDecl writeToMethod = getWriteToMethod(utils, publicStaticModifiers, byteBufferClass, writeToBlock);
 
-                    classDecl.defs = classDecl.defs.append(prepareFlagsMethod);
+            JCBlock readFromBlock = methodBlockFactory.readFromBlock();
+            JCMethodDecl readFromMethod = getReadFromMethod(utils, publicStaticModifiers, byteBufferClass, readFromBlock);
 
-                    makeAllFieldsTransient(classDecl);
-                    logPw.println("EGEN: Class " + classDecl.name + " - success.\n" + classDecl.toString());
-                }
-            } catch (Throwable t) {
-                if (logPw != null) {
-                    logPw.println("EGEN: Processing of " + classDecl.name + " resulted an exception:");
-                    logPw.println(t);
-                    t.printStackTrace(logPw);
-                }
-            } finally {
-                if (logPw != null) {
-                    logPw.flush();
-                }
-            }
+            staticMethods = staticMethods.append(writeToMethod).append(readFromMethod);
+        } else {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "EGEN: ByteBuffer methods " +
+                    "writeTo()/readFrom() are not generated for " + classDecl.name + ": " + bufferCodecProblem, e);
+        }
 
-            return true;
+        JCBlock prepareFlagsBlock = methodBlockFactory.prepareFlagsBlock();
+        JCMethodDecl prepareFlagsMethod = getPrepareFlagsMethod(utils,
+                methodBlockFactory.flagsType(methodBlockFactory.hasWideFlags()), prepareFlagsBlock);
+        staticMethods = staticMethods.append(prepareFlagsMethod);
+        if (codecs) {
+            String codecSource = writeCodecSource(e, staticMethods);
+            if (logPw != null)
+                logPw.println("EGEN: Class " + codecClassName(classDecl.sym) + " - generated.\n" + codecSource);
+        } else {
+            for (JCTree method : staticMethods)
+                classDecl.defs = classDecl.defs.append(method);
+            for (JCVariableDecl field : staticFields.values())
+                classDecl.defs = classDecl.defs.append(field);
+        }
+        makeAllFieldsTransient(classDecl);
+
+        if (externalizable) {
+            classDecl.defs = classDecl.defs.append(getWriteExternalMethod(utils, ioExceptionClass,
+                    methodBlockFactory.writeExternalBlock()));
+            classDecl.defs = classDecl.defs.append(getReadExternalMethod(utils, ioExceptionClass,
+                    classNotFoundExceptionClass, methodBlockFactory.readExternalBlock()));
+            makeDefaultConstructorPublic(classDecl);
+        } else {
+            classDecl.defs = classDecl.defs.append(writeObjectMethod);
+            classDecl.defs = classDecl.defs.append(readObjectMethod);
         }
 
-        return false;
+        if (logPw != null)
+            logPw.println("EGEN: Class " + classDecl.name + " - success in " +
+                    (System.nanoTime() - classStart) / 1000 + " us.\n" + classDecl.toString());
+    }
+
+    private void reportException(String name, Throwable t, PrintWriter logPw) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "EGEN: Processing of " + name + " resulted an exception: " + t);
+        if (logPw != null) {
+            logPw.println("EGEN: Processing of " + name + " resulted an exception:");
+            logPw.println(t);
+            t.printStackTrace(logPw);
+        }
     }
 
     private void fetchCompilerOptions() {
-        ordinals = processingEnv.getOptions().get("ordinals");
-        if (ordinals == null)
-            ordinals = "";
+        ordinals = parseClassList(processingEnv.getOptions().get("ordinals"));
+        maps = parseClassList(processingEnv.getOptions().get("maps"));
+        collections = parseClassList(processingEnv.getOptions().get("collections"));
+
+        runtime = processingEnv.getOptions().get("runtime");
+        if (runtime == null)
+            runtime = "egen";
 
-        maps = processingEnv.getOptions().get("maps");
-        if (maps == null)
-            maps = "";
+        canonicalize = Boolean.parseBoolean(processingEnv.getOptions().get("canonicalize"));
 
-        collections = processingEnv.getOptions().get("collections");
-        if (collections == null)
-            collections = "";
+        codecs = Boolean.parseBoolean(processingEnv.getOptions().get("codecs"));
+
+        report = processingEnv.getOptions().get("report");
+        if (report == null && processingEnv.getOptions().containsKey("report"))
+            report = "egen_output.txt"; // -Areport without a value
+    }
+
+    /**
+     * Class lists are matched exactly by qualified name, names may be separated by commas, semicolons or spaces.
+     */
+    private static Set<String> parseClassList(String option) {
+        Set<String> result = new HashSet<>();
+        if (option != null) {
+            for (String name : option.split("[,;\\s]+")) {
+                if (!name.isEmpty())
+                    result.add(name);
+            }
+        }
+        return result;
     }
 
     private JCMethodDecl getWriteContentsMethod(JavacElements utils, JCExpression ioExceptionClass, JCModifiers methodModifiers, JCExpression objectOutputClass, JCBlock writeContentsBlock) {
@@ -239,6 +349,63 @@ public class AutoSerializableProcessor extends AbstractProcessor {
         );
     }
 
+    private JCMethodDecl getWriteExternalMethod(JavacElements utils, JCExpression ioExceptionClass, JCBlock writeExternalBlock) {
+        return maker.MethodDef(
+                maker.Modifiers(Flags.PUBLIC),
+                utils.getName("writeExternal"),
+                maker.TypeIdent(TypeTag.VOID),
+                List.<JCTypeParameter>nil(),
+                List.of(maker.VarDef(maker.Modifiers(Flags.PARAMETER), utils.getName("out"), makeSelectExpr("java.io.ObjectOutput"), null)),
+                List.of(ioExceptionClass),
+                writeExternalBlock,
+                null
+        );
+    }
+
+    private JCMethodDecl getReadExternalMethod(JavacElements utils, JCExpression ioExceptionClass, JCExpression classNotFoundExceptionClass, JCBlock readExternalBlock) {
+        return maker.MethodDef(
+                maker.Modifiers(Flags.PUBLIC),
+                utils.getName("readExternal"),
+                maker.TypeIdent(TypeTag.VOID),
+                List.<JCTypeParameter>nil(),
+                List.of(maker.VarDef(maker.Modifiers(Flags.PARAMETER), utils.getName("in"), makeSelectExpr("java.io.ObjectInput"), null)),
+                List.of(ioExceptionClass, classNotFoundExceptionClass),
+                readExternalBlock,
+                null
+        );
+    }
+
+    /**
+     * Externalizable class is instantiated by its public no-arg constructor: existing one is made public,
+     * otherwise it's added.
+     */
+    private void makeDefaultConstructorPublic(JCClassDecl classDecl) {
+        for (JCTree tree : classDecl.defs) {
+            if (tree instanceof JCMethodDecl) {
+                JCMethodDecl method = (JCMethodDecl) tree;
+                if (method.name == utils.getName("<init>") && method.params.isEmpty()) {
+                    // implicit constructor becomes explicit, otherwise javac would generate it again with class access
+                    method.mods.flags = (method.mods.flags & ~(Flags.PRIVATE | Flags.PROTECTED | Flags.GENERATEDCONSTR)) | Flags.PUBLIC;
+                    if (method.sym != null)
+                        method.sym.flags_field = (method.sym.flags_field & ~(Flags.PRIVATE | Flags.PROTECTED | Flags.GENERATEDCONSTR)) | Flags.PUBLIC;
+                    return;
+                }
+            }
+        }
+
+        JCStatement superCall = maker.Exec(maker.Apply(List.<JCExpression>nil(), ident("super"), List.<JCExpression>nil()));
+        classDecl.defs = classDecl.defs.append(maker.MethodDef(
+                maker.Modifiers(Flags.PUBLIC),
+                utils.getName("<init>"),
+                null,
+                List.<JCTypeParameter>nil(),
+                List.<JCVariableDecl>nil(),
+                List.<JCExpression>nil(),
+                maker.Block(0, List.of(superCall)),
+                null
+        ));
+    }
+
     private JCMethodDecl getWriteInlineMethod(JavacElements utils, JCExpression ioExceptionClass, JCModifiers methodModifiers, JCExpression objectOutputClass, JCBlock writeInlineBlock) {
         return maker.MethodDef(
                 methodModifiers,
@@ -272,11 +439,43 @@ public class AutoSerializableProcessor extends AbstractProcessor {
         );
     }
 
-    private JCMethodDecl getPrepareFlagsMethod(JavacElements utils, JCBlock prepareFlagsBlock) {
+    private JCMethodDecl getWriteToMethod(JavacElements utils, JCModifiers methodModifiers, JCExpression byteBufferClass, JCBlock writeToBlock) {
+        return maker.MethodDef(
+                methodModifiers,
+                utils.getName("writeTo"),
+                maker.TypeIdent(TypeTag.VOID),
+                List.<JCTypeParameter>nil(),
+                List.of(
+                        maker.VarDef(maker.Modifiers(Flags.PARAMETER), utils.getName("out"), byteBufferClass, null),
+                        maker.VarDef(maker.Modifiers(Flags.PARAMETER), utils.getName("self"), makeSelectExpr(classDecl.sym.type.toString()), null)
+                ),
+                List.<JCExpression>nil(),
+                writeToBlock,
+                null
+        );
+    }
+
+    private JCMethodDecl getReadFromMethod(JavacElements utils, JCModifiers methodModifiers, JCExpression byteBufferClass, JCBlock readFromBlock) {
+        return maker.MethodDef(
+                methodModifiers,
+                utils.getName("readFrom"),
+                maker.TypeIdent(TypeTag.VOID),
+                List.<JCTypeParameter>nil(),
+                List.of(
+                        maker.VarDef(maker.Modifiers(Flags.PARAMETER), utils.getName("in"), byteBufferClass, null),
+                        maker.VarDef(maker.Modifiers(Flags.PARAMETER), utils.getName("self"), makeSelectExpr(classDecl.sym.type.toString()), null)
+                ),
+                List.<JCExpression>nil(),
+                readFromBlock,
+                null
+        );
+    }
+
+    private JCMethodDecl getPrepareFlagsMethod(JavacElements utils, JCExpression flagsType, JCBlock prepareFlagsBlock) {
         return maker.MethodDef(
                 maker.Modifiers(Flags.PRIVATE | Flags.STATIC),
                 utils.getName("prepareFlags"),
-                maker.TypeIdent(TypeTag.LONG),
+                flagsType,
                 List.<JCTypeParameter>nil(),
                 List.of(maker.VarDef(maker.Modifiers(Flags.PARAMETER), utils.getName("self"), makeSelectExpr(classDecl.sym.type.toString()), null)),
                 List.<JCExpression>nil(),
@@ -298,22 +497,76 @@ public class AutoSerializableProcessor extends AbstractProcessor {
         return maker.Ident(utils.getName(name));
     }
 
-    public static Set<? extends Element> getClasses() {
-        return classes;
-    }
-
-    public static String getOrdinals() {
+    public static Set<String> getOrdinals() {
         return ordinals;
     }
 
-    public static String getMaps() {
+    public static Set<String> getMaps() {
         return maps;
     }
 
-    public static String getCollections() {
+    public static Set<String> getCollections() {
         return collections;
     }
 
+    /**
+     * Works for classes from both sources and class files (the annotation has CLASS retention), so the decision
+     * depends on the type only and not on other classes of the round, as isolating incremental processing requires.
+     * @return @AutoSerializable annotation of the type (or null, if it's not annotated)
+     */
+    public static Attribute.Compound getAutoSerializable(Symbol type) {
+        for (Attribute.Compound annotation : type.getAnnotationMirrors()) {
+            if (annotation.type.tsym.getQualifiedName().contentEquals(ANNOTATION_TYPE))
+                return annotation;
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the class is annotated with @AutoSerializable(option = true)
+     */
+    public static boolean isClassOptionEnabled(JCClassDecl classDecl, String option) {
+        for (JCAnnotation annotation : classDecl.mods.annotations) {
+            String name = annotation.annotationType.toString();
+            if (name.equals(ANNOTATION_TYPE) || ANNOTATION_TYPE.endsWith("." + name))
+                return "true".equals(getAnnotationValue(annotation, option));
+        }
+        return false;
+    }
+
+    /**
+     * Adds static field (e.g. lookup table) to the class being processed, fields with the same name are added once.
+     * @return true if field has not been added yet
+     */
+    public static boolean addStaticField(JCVariableDecl field) {
+        return staticFields.putIfAbsent(field.name.toString(), field) == null;
+    }
+
+    /**
+     * Code of another class may be generated while processing the current one (e.g. to check it), so its lookup
+     * tables shall be dropped afterwards by {@link #restoreStaticFields(Map)}.
+     * @return copy of static fields added to the class being processed so far
+     */
+    public static Map<String, JCVariableDecl> saveStaticFields() {
+        return new LinkedHashMap<>(staticFields);
+    }
+
+    public static void restoreStaticFields(Map<String, JCVariableDecl> saved) {
+        staticFields.clear();
+        staticFields.putAll(saved);
+    }
+
+    public static boolean isCanonicalize() {
+        return canonicalize;
+    }
+
+    /**
+     * @return true if generated object stream code should call dxlib's IOUtil instead of EGEN's own IOUtils
+     */
+    public static boolean isDxlibRuntime() {
+        return "dxlib".equals(runtime);
+    }
+
     /**
      * @return EGEN-related annotation expression (or null, if var is not annotated)
      */
@@ -325,6 +578,37 @@ public class AutoSerializableProcessor extends AbstractProcessor {
         return null;
     }
 
+    /**
+     * Unlike the main annotation, modifier annotations (e.g. @Decimal) may accompany any other EGEN annotation.
+     * They are matched by qualified type so that user-defined strategy annotations with the same name aren't affected.
+     * @return EGEN annotation of given simple name (or null, if var is not annotated with it)
+     */
+    public static JCAnnotation getEgenAnnotation(JCVariableDecl var, String annotationType) {
+        for (JCAnnotation annotation : var.mods.annotations) {
+            String name = annotation.type != null ? annotation.type.tsym.getQualifiedName().toString() :
+                    annotation.getAnnotationType().toString();
+            if (name.equals(annotationType) || name.equals(FIELD_ANNOTATION_PACKAGE + annotationType))
+                return annotation;
+        }
+        return null;
+    }
+
+    /**
+     * @return source representation of annotation argument (or null, if it's not specified explicitly)
+     */
+    public static String getAnnotationValue(JCAnnotation annotation, String argumentName) {
+        for (JCExpression argument : annotation.args) {
+            if (argument instanceof JCAssign) {
+                JCAssign assign = (JCAssign) argument;
+                if (argumentName.equals(assign.lhs.toString()))
+                    return assign.rhs.toString();
+            } else if ("value".equals(argumentName)) {
+                return argument.toString();
+            }
+        }
+        return null;
+    }
+
     /**
      * @return string representation of EGEN-related annotation (or "", if var is not annotated)
      */
@@ -345,6 +629,76 @@ public class AutoSerializableProcessor extends AbstractProcessor {
         classDecl.implementing = newImplementing;
     }
 
+    /**
+     * Companion codec class accesses fields of the class directly, so they can't be private.
+     */
+    private boolean checkCodecAccess(JCClassDecl classDecl) {
+        boolean accessible = true;
+        if ((classDecl.sym.flags() & Flags.PRIVATE) != 0) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "EGEN: private class can't have a codec class", classDecl.sym);
+            accessible = false;
+        }
+        for (JCTree tree : classDecl.defs) {
+            if (tree instanceof JCVariableDecl) {
+                JCVariableDecl field = (JCVariableDecl) tree;
+                if ((field.mods.flags & (Flags.PRIVATE | Flags.STATIC | Flags.TRANSIENT)) == Flags.PRIVATE) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "EGEN: private field " + field.name + " can't be accessed from codec class", field.sym);
+                    accessible = false;
+                }
+            }
+        }
+        return accessible;
+    }
+
+    /**
+     * Generates companion codec class with static methods and lookup tables of the current class,
+     * imports of the class' compilation unit are copied since the methods refer to types as they are written.
+     */
+    private String writeCodecSource(Element e, List<JCTree> staticMethods) throws IOException {
+        String codecName = codecClassName(classDecl.sym);
+        int dot = codecName.lastIndexOf('.');
+
+        List<JCTree> defs = List.nil();
+        for (JCVariableDecl field : staticFields.values())
+            defs = defs.append(field);
+        defs = defs.append(maker.MethodDef(maker.Modifiers(Flags.PRIVATE), utils.getName("<init>"), null,
+                List.<JCTypeParameter>nil(), List.<JCVariableDecl>nil(), List.<JCExpression>nil(),
+                maker.Block(0, List.<JCStatement>nil()), null));
+        defs = defs.appendList(staticMethods);
+        JCClassDecl codecDecl = maker.ClassDef(maker.Modifiers(Flags.PUBLIC | Flags.FINAL),
+                utils.getName(codecName.substring(dot + 1)), List.<JCTypeParameter>nil(), null, List.<JCExpression>nil(), defs);
+
+        StringBuilder source = new StringBuilder();
+        if (dot >= 0)
+            source.append("package ").append(codecName, 0, dot).append(";\n\n");
+        JCCompilationUnit unit = utils.getTreeAndTopLevel(e, null, null).snd;
+        for (JCTree tree : unit.getImports())
+            source.append(tree);
+        for (Symbol owner = classDecl.sym; owner instanceof Symbol.ClassSymbol; owner = owner.owner)
+            source.append("import ").append(((Symbol.ClassSymbol) owner).getQualifiedName()).append(".*;\n");
+        source.append(codecDecl).append('\n');
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(codecName, e);
+        try (Writer writer = file.openWriter()) {
+            writer.write(source.toString());
+        }
+        return source.toString();
+    }
+
+    /**
+     * @return qualified name of the class holding generated static methods of the given class: the class itself or
+     * its companion codec class, see {@link IOUtils#codecClass(Class)}
+     */
+    public static String codecClassName(Symbol.ClassSymbol type) {
+        if (!codecs)
+            return type.getQualifiedName().toString();
+        String packageName = type.packge().getQualifiedName().toString();
+        String flatName = type.flatName().toString().substring(packageName.isEmpty() ? 0 : packageName.length() + 1);
+        return (packageName.isEmpty() ? "" : packageName + ".") + flatName.replace('$', '_') + IOUtils.CODEC_SUFFIX;
+    }
+
     /**
      * Info about fields is redundant in the class descriptor if custom serialization methods are present.
      */
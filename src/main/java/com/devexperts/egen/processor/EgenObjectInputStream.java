@@ -0,0 +1,252 @@
+package com.devexperts.egen.processor;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+
+import static com.devexperts.egen.processor.EgenObjectOutputStream.*;
+
+/**
+ * Reads objects written by {@link EgenObjectOutputStream}. Classes named in the stream are loaded without
+ * initialization and accepted only if they have methods generated by EGEN and pass the serialization filter
+ * of this stream. Other objects are read by a regular {@link ObjectInputStream} nested into this stream,
+ * which uses {@link #resolveClass}, {@link #resolveProxyClass}, {@link #resolveObject} and filter of this stream.
+ */
+public class EgenObjectInputStream extends ObjectInputStream {
+    private final DataInputStream data;
+    private final ArrayList<StreamCodec> codecs = new ArrayList<>();
+    private ObjectInputStream serialized; // created on the first object that needs it
+    private boolean resolveEnabled;
+    private int depth; // of objects being read, for the filter
+    private long references; // objects read so far, for the filter
+
+    public EgenObjectInputStream(InputStream in) throws IOException {
+        super();
+        this.data = new DataInputStream(in);
+    }
+
+    @Override
+    protected Object readObjectOverride() throws IOException, ClassNotFoundException {
+        int tag = IOUtils.readCompactInt(data);
+        while (tag == RESET) {
+            codecs.clear();
+            serialized = null;
+            tag = IOUtils.readCompactInt(data);
+        }
+
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                references++;
+                return IOUtils.readUTFString(data);
+            case SERIALIZED:
+                if (serialized == null)
+                    serialized = new SerializedInputStream();
+                return serialized.readObject();
+            case NEW_CLASS:
+                String name = data.readUTF();
+                Class<?> type = resolveEgenClass(name);
+                checkFilter(type); // before methods of the class are looked up and made accessible
+                StreamCodec codec = StreamCodec.forClass(type);
+                if (codec == null)
+                    throw new InvalidClassException(name, "Class is not processed by EGEN");
+                codecs.add(codec);
+                return read(codec);
+            default:
+                int id = tag - CLASS_ID;
+                if (id < 0 || id >= codecs.size())
+                    throw new StreamCorruptedException("Unknown class id " + id);
+                StreamCodec known = codecs.get(id);
+                checkFilter(known.type());
+                return read(known);
+        }
+    }
+
+    /**
+     * Checks each object like {@link ObjectInputStream} does, so that filter limits depth and number of objects too.
+     */
+    private void checkFilter(Class<?> type) throws InvalidClassException {
+        references++;
+        ObjectInputFilters.checkClass(ObjectInputFilters.getFilter(this), type, depth + 1, references);
+    }
+
+    private Object read(StreamCodec codec) throws IOException, ClassNotFoundException {
+        depth++;
+        try {
+            return codec.read(this);
+        } finally {
+            depth--;
+        }
+    }
+
+    /**
+     * Loads class by name read from the stream; by default context class loader is tried first.
+     */
+    protected Class<?> resolveEgenClass(String name) throws ClassNotFoundException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader != null) {
+            try {
+                return Class.forName(name, false, loader);
+            } catch (ClassNotFoundException ignored) {
+            }
+        }
+        return Class.forName(name, false, EgenObjectInputStream.class.getClassLoader());
+    }
+
+    @Override
+    protected boolean enableResolveObject(boolean enable) throws SecurityException {
+        boolean result = super.enableResolveObject(enable);
+        resolveEnabled = enable;
+        if (serialized instanceof SerializedInputStream)
+            ((SerializedInputStream) serialized).enableResolveObject(enable);
+        return result;
+    }
+
+    @Override
+    public Object readUnshared() throws IOException, ClassNotFoundException {
+        return readObjectOverride();
+    }
+
+    @Override
+    public int read() throws IOException {
+        return data.read();
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws IOException {
+        return data.read(buf, off, len);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return data.available();
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return data.readBoolean();
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        return data.readByte();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return data.readUnsignedByte();
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        return data.readShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return data.readUnsignedShort();
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return data.readChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        return data.readInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return data.readLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return data.readFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return data.readDouble();
+    }
+
+    @Override
+    public void readFully(byte[] buf) throws IOException {
+        data.readFully(buf);
+    }
+
+    @Override
+    public void readFully(byte[] buf, int off, int len) throws IOException {
+        data.readFully(buf, off, len);
+    }
+
+    @Override
+    public int skipBytes(int len) throws IOException {
+        return data.skipBytes(len);
+    }
+
+    @Override
+    @Deprecated
+    @SuppressWarnings("deprecation")
+    public String readLine() throws IOException {
+        return data.readLine();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return data.readUTF();
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+    }
+
+    private class SerializedInputStream extends ObjectInputStream {
+        SerializedInputStream() throws IOException {
+            super(data);
+            ObjectInputFilters.copyFilter(EgenObjectInputStream.this, this);
+            enableResolveObject(resolveEnabled);
+        }
+
+        @Override
+        protected boolean enableResolveObject(boolean enable) throws SecurityException {
+            return super.enableResolveObject(enable);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            return EgenObjectInputStream.this.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            return EgenObjectInputStream.this.resolveProxyClass(interfaces);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            return EgenObjectInputStream.this.resolveObject(obj);
+        }
+    }
+}
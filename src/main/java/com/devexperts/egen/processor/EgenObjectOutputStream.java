@@ -0,0 +1,181 @@
+package com.devexperts.egen.processor;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Object stream that writes instances of @AutoSerializable classes by calling their generated methods directly,
+ * without class descriptors and handle table. First instance of each class in the stream is preceded by its name,
+ * next ones only by its compact id. Other objects are written by a regular {@link ObjectOutputStream} nested
+ * into this stream, strings are written as compact UTF strings.<br>
+ * Objects written directly lose their identity: shared references are read back as copies, cyclic ones aren't supported.
+ * Classes that declare or inherit writeReplace(), readResolve() or readObjectNoData() are always written by the nested
+ * stream, so that these methods are called.
+ * The stream shall be read by {@link EgenObjectInputStream}. It doesn't buffer output, so wrap the target stream
+ * into {@link java.io.BufferedOutputStream} if needed.
+ */
+public class EgenObjectOutputStream extends ObjectOutputStream {
+    static final int NULL = 0;
+    static final int SERIALIZED = 1; // object written by nested ObjectOutputStream
+    static final int STRING = 2;
+    static final int RESET = 3;
+    static final int NEW_CLASS = 4; // class name followed by object contents
+    static final int CLASS_ID = 5; // CLASS_ID + id followed by object contents
+
+    private final DataOutputStream data;
+    private final Map<Class<?>, Integer> classIds = new HashMap<>();
+    private ObjectOutputStream serialized; // created on the first object that needs it
+
+    public EgenObjectOutputStream(OutputStream out) throws IOException {
+        super();
+        this.data = new DataOutputStream(out);
+    }
+
+    @Override
+    protected void writeObjectOverride(Object obj) throws IOException {
+        if (obj == null) {
+            IOUtils.writeCompactInt(data, NULL);
+            return;
+        }
+        if (obj instanceof String) {
+            IOUtils.writeCompactInt(data, STRING);
+            IOUtils.writeUTFString(data, (String) obj);
+            return;
+        }
+
+        Class<?> type = obj.getClass();
+        StreamCodec codec = StreamCodec.forClass(type);
+        if (codec == null) {
+            IOUtils.writeCompactInt(data, SERIALIZED);
+            if (serialized == null)
+                serialized = new ObjectOutputStream(data);
+            serialized.writeObject(obj);
+            serialized.flush();
+            return;
+        }
+
+        Integer id = classIds.get(type);
+        if (id == null) {
+            classIds.put(type, classIds.size());
+            IOUtils.writeCompactInt(data, NEW_CLASS);
+            data.writeUTF(type.getName());
+        } else {
+            IOUtils.writeCompactInt(data, CLASS_ID + id);
+        }
+        codec.write(this, obj);
+    }
+
+    @Override
+    public void writeUnshared(Object obj) throws IOException {
+        writeObjectOverride(obj);
+    }
+
+    /**
+     * Forgets classes and objects already written, so that next ones are written as if the stream were new.
+     */
+    @Override
+    public void reset() throws IOException {
+        IOUtils.writeCompactInt(data, RESET);
+        classIds.clear();
+        if (serialized != null) {
+            serialized.flush();
+            serialized = null;
+        }
+    }
+
+    @Override
+    public void write(int val) throws IOException {
+        data.write(val);
+    }
+
+    @Override
+    public void write(byte[] buf) throws IOException {
+        data.write(buf, 0, buf.length);
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) throws IOException {
+        data.write(buf, off, len);
+    }
+
+    @Override
+    public void writeBoolean(boolean val) throws IOException {
+        data.writeBoolean(val);
+    }
+
+    @Override
+    public void writeByte(int val) throws IOException {
+        data.writeByte(val);
+    }
+
+    @Override
+    public void writeShort(int val) throws IOException {
+        data.writeShort(val);
+    }
+
+    @Override
+    public void writeChar(int val) throws IOException {
+        data.writeChar(val);
+    }
+
+    @Override
+    public void writeInt(int val) throws IOException {
+        data.writeInt(val);
+    }
+
+    @Override
+    public void writeLong(long val) throws IOException {
+        data.writeLong(val);
+    }
+
+    @Override
+    public void writeFloat(float val) throws IOException {
+        data.writeFloat(val);
+    }
+
+    @Override
+    public void writeDouble(double val) throws IOException {
+        data.writeDouble(val);
+    }
+
+    @Override
+    public void writeBytes(String str) throws IOException {
+        data.writeBytes(str);
+    }
+
+    @Override
+    public void writeChars(String str) throws IOException {
+        data.writeChars(str);
+    }
+
+    @Override
+    public void writeUTF(String str) throws IOException {
+        data.writeUTF(str);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        data.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+    }
+}
@@ -13,13 +13,24 @@ package com.devexperts.egen.processor;
  */
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
-import static com.devexperts.io.IOUtil.readUTFString;
-import static com.devexperts.io.IOUtil.writeUTFString;
-
+/**
+ * Runtime support for generated code. Compact numbers and UTF strings have the same format as in dxlib's IOUtil,
+ * but are written by at most a couple of wide primitive writes instead of byte-by-byte and without allocations.
+ */
 public class IOUtils {
+    private static final int MAX_RETAINED_SCRATCH = 8192;
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<>();
+    // numbers have their own scratch, so they can be written while the main one holds encoded data
+    private static final ThreadLocal<byte[]> NUMBER_SCRATCH = new ThreadLocal<>();
+
     public static void writeCompactInt(DataOutput out, int v) throws IOException {
-        com.devexperts.io.IOUtil.writeCompactInt(out, v);
+        byte[] bytes = numberScratch();
+        out.write(bytes, 0, encodeCompactInt(bytes, 0, v));
     }
 
     public static void writeCompactIntArray(DataOutput out, int[] v) throws IOException {
@@ -51,7 +62,8 @@ public class IOUtils {
     }
 
     public static void writeCompactLong(DataOutput out, long v) throws IOException {
-        com.devexperts.io.IOUtil.writeCompactLong(out, v);
+        byte[] bytes = numberScratch();
+        out.write(bytes, 0, encodeCompactLong(bytes, 0, v));
     }
 
     public static void writeCompactLongArray(DataOutput out, long[] v) throws IOException {
@@ -83,7 +95,16 @@ public class IOUtils {
     }
 
     public static int readCompactInt(DataInput in) throws IOException {
-        return com.devexperts.io.IOUtil.readCompactInt(in);
+        int n = in.readUnsignedByte();
+        if (n < 0x80)
+            return (n << 25) >> 25;
+        if (n < 0xC0)
+            return ((n << 26) >> 18) | in.readUnsignedByte();
+        if (n < 0xE0)
+            return ((n << 27) >> 11) | in.readUnsignedShort();
+        if (n < 0xF0)
+            return ((n << 28) >> 4) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+        return in.readInt();
     }
 
     public static int[] readCompactIntArray(DataInput in) throws IOException {
@@ -115,7 +136,28 @@ public class IOUtils {
     }
 
     public static long readCompactLong(DataInput in) throws IOException {
-        return com.devexperts.io.IOUtil.readCompactLong(in);
+        int n = in.readUnsignedByte();
+        if (n < 0x80)
+            return (n << 25) >> 25;
+        if (n < 0xC0)
+            return ((n << 26) >> 18) | in.readUnsignedByte();
+        if (n < 0xE0)
+            return ((n << 27) >> 11) | in.readUnsignedShort();
+        if (n < 0xF0)
+            return ((n << 28) >> 4) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+        int hi;
+        if (n < 0xF8) {
+            hi = (n << 29) >> 29;
+        } else if (n < 0xFC) {
+            hi = ((n << 30) >> 22) | in.readUnsignedByte();
+        } else if (n < 0xFE) {
+            hi = ((n << 31) >> 15) | in.readUnsignedShort();
+        } else if (n < 0xFF) {
+            hi = (in.readByte() << 16) | in.readUnsignedShort();
+        } else {
+            hi = in.readInt();
+        }
+        return ((long) hi << 32) | (in.readInt() & 0xFFFFFFFFL);
     }
 
     public static long[] readCompactLongArray(DataInput in) throws IOException {
@@ -146,6 +188,58 @@ public class IOUtils {
         return v;
     }
 
+    /**
+     * Writes string as its length in UTF-8 bytes (-1 for null) followed by the bytes themselves.
+     * Supplementary characters take 4 bytes, unpaired surrogates are kept as 3-byte sequences.
+     */
+    public static void writeUTFString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        int length = utfLength(s);
+        writeCompactInt(out, length);
+        byte[] bytes = scratch(length);
+        encodeUTF(s, bytes);
+        out.write(bytes, 0, length);
+    }
+
+    public static String readUTFString(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        byte[] bytes = scratch(length);
+        in.readFully(bytes, 0, length);
+        return decodeUTF(bytes, 0, length);
+    }
+
+    /**
+     * Reads string written by {@link #writeUTFString(DataOutput, String)}; short strings are taken from the shared
+     * cache when possible, so equal strings read by different calls are the same instance.
+     */
+    public static String readCanonicalUTFString(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        byte[] bytes = scratch(length);
+        in.readFully(bytes, 0, length);
+        return canonicalUTF(bytes, 0, length);
+    }
+
+    /**
+     * Writes string through the dictionary attached to the given stream: repeated strings cost their index only.
+     */
+    public static void writeDictionaryString(DataOutput out, String s) throws IOException {
+        StringDictionary.forStream(out).write(out, s);
+    }
+
+    public static String readDictionaryString(DataInput in) throws IOException {
+        return StringDictionary.forStream(in).read(in);
+    }
+
     public static void writeCompactString(DataOutput out, String s) throws IOException {
         writeUTFString(out, s);
     }
@@ -154,22 +248,6 @@ public class IOUtils {
         return readUTFString(in);
     }
 
-//    public static void writeDecimalDouble(DataOutput out, double d) throws IOException {
-//        writeCompactInt(out, compose(d));
-//    }
-//
-//    public static double readDecimalDouble(DataInput in) throws IOException {
-//        return toDouble(readCompactInt(in));
-//    }
-//
-//    public static void writeDeltaDouble(DataOutput out, double d, double from) throws IOException {
-//        writeCompactInt(out, compose(d) - compose(from));
-//    }
-//
-//    public static double readDeltaDouble(DataInput in, double from) throws IOException {
-//        return toDouble(readCompactInt(in) + compose(from));
-//    }
-
     public static void writeDeltaInt(DataOutput out, int v, int from) throws IOException {
         writeCompactInt(out, v - from);
     }
@@ -186,39 +264,1815 @@ public class IOUtils {
         return readCompactLong(in) + from;
     }
 
-//    public static void writeDeltaDoubleArray(DataOutput out, double[] v) throws IOException {
-//        if (v == null) {
-//            writeCompactInt(out, -1);
-//            return;
-//        }
-//
-//        writeCompactInt(out, v.length);
-//        for (int i = 0; i < v.length; i++) {
-//            if (i == 0) {
-//                out.writeInt(compose(v[i]));
-//            } else {
-//                writeCompactInt(out, compose(v[i]) - compose(v[i - 1]));
-//            }
-//        }
-//    }
+    // ========== ByteBuffer codecs ==========
+    // Compact numbers use the same format as dxlib's IOUtil: one to five bytes for int and up to nine bytes for long.
+    // All multi-byte values are big-endian regardless of the buffer's byte order, so buffer codecs produce the same
+    // bytes as stream ones and data written to a buffer of any order can be read from a buffer of any order.
 
-//    public static double[] readDeltaDoubleArray(DataInput in) throws IOException {
-//        int length = readCompactInt(in);
-//        if (length == -1)
-//            return null;
-//
-//        int[] v = new int[length];
-//        double[] result = new double[length];
-//        for (int i = 0; i < v.length; i++) {
-//            if (i == 0) {
-//                v[i] = in.readInt();
-//            } else {
-//                v[i] = v[i - 1] + readCompactInt(in);
-//            }
-//            result[i] = toDouble(v[i]);
-//        }
-//        return result;
-//    }
+    public static void writeCompactInt(ByteBuffer out, int v) {
+        if (v >= 0) {
+            if (v < 0x40) {
+                out.put((byte) v);
+            } else if (v < 0x2000) {
+                writeShort(out, (short) (0x8000 | v));
+            } else if (v < 0x100000) {
+                out.put((byte) (0xC0 | (v >> 16)));
+                writeShort(out, (short) v);
+            } else if (v < 0x08000000) {
+                writeInt(out, 0xE0000000 | v);
+            } else {
+                out.put((byte) 0xF0);
+                writeInt(out, v);
+            }
+        } else {
+            if (v >= -0x40) {
+                out.put((byte) (0x7F & v));
+            } else if (v >= -0x2000) {
+                writeShort(out, (short) (0xBFFF & v));
+            } else if (v >= -0x100000) {
+                out.put((byte) (0xDF & (v >> 16)));
+                writeShort(out, (short) v);
+            } else if (v >= -0x08000000) {
+                writeInt(out, 0xEFFFFFFF & v);
+            } else {
+                out.put((byte) 0xF7);
+                writeInt(out, v);
+            }
+        }
+    }
+
+    public static void writeCompactLong(ByteBuffer out, long v) {
+        if (v == (long) (int) v) {
+            writeCompactInt(out, (int) v);
+            return;
+        }
+        int hi = (int) (v >>> 32);
+        if (hi >= 0) {
+            if (hi < 0x04) {
+                out.put((byte) (0xF0 | hi));
+            } else if (hi < 0x0200) {
+                writeShort(out, (short) (0xF800 | hi));
+            } else if (hi < 0x010000) {
+                out.put((byte) (0xFC | (hi >> 16)));
+                writeShort(out, (short) hi);
+            } else if (hi < 0x800000) {
+                writeInt(out, 0xFE000000 | hi);
+            } else {
+                out.put((byte) 0xFF);
+                writeInt(out, hi);
+            }
+        } else {
+            if (hi >= -0x04) {
+                out.put((byte) (0xF7 & hi));
+            } else if (hi >= -0x0200) {
+                writeShort(out, (short) (0xFBFF & hi));
+            } else if (hi >= -0x010000) {
+                out.put((byte) (0xFD & (hi >> 16)));
+                writeShort(out, (short) hi);
+            } else if (hi >= -0x800000) {
+                writeInt(out, 0xFEFFFFFF & hi);
+            } else {
+                out.put((byte) 0xFF);
+                writeInt(out, hi);
+            }
+        }
+        writeInt(out, (int) v);
+    }
+
+    /**
+     * Peeks the first byte and reads two- and four-byte forms by a single buffer access.
+     */
+    public static int readCompactInt(ByteBuffer in) {
+        int n = in.get(in.position()) & 0xFF;
+        if (n < 0x80) {
+            in.position(in.position() + 1);
+            return (n << 25) >> 25;
+        }
+        if (n < 0xC0)
+            return (readShort(in) << 18) >> 18;
+        if (n < 0xE0)
+            return ((in.get() << 27) >> 11) | (readShort(in) & 0xFFFF);
+        if (n < 0xF0)
+            return (readInt(in) << 4) >> 4;
+        in.position(in.position() + 1);
+        return readInt(in);
+    }
+
+    public static long readCompactLong(ByteBuffer in) {
+        int n = in.get() & 0xFF;
+        if (n < 0x80)
+            return (n << 25) >> 25;
+        if (n < 0xC0)
+            return ((n << 26) >> 18) | (in.get() & 0xFF);
+        if (n < 0xE0)
+            return ((n << 27) >> 11) | (readShort(in) & 0xFFFF);
+        if (n < 0xF0)
+            return ((n << 28) >> 4) | ((in.get() & 0xFF) << 16) | (readShort(in) & 0xFFFF);
+        int hi;
+        if (n < 0xF8) {
+            hi = (n << 29) >> 29;
+        } else if (n < 0xFC) {
+            hi = ((n << 30) >> 22) | (in.get() & 0xFF);
+        } else if (n < 0xFE) {
+            hi = ((n << 31) >> 15) | (readShort(in) & 0xFFFF);
+        } else if (n < 0xFF) {
+            hi = (in.get() << 16) | (readShort(in) & 0xFFFF);
+        } else {
+            hi = readInt(in);
+        }
+        return ((long) hi << 32) | (readInt(in) & 0xFFFFFFFFL);
+    }
+
+    // fixed-width values and multi-byte parts of compact numbers are accessed at once and swapped for little-endian buffers
+
+    public static void writeShort(ByteBuffer out, short v) {
+        out.putShort(out.order() == ByteOrder.BIG_ENDIAN ? v : Short.reverseBytes(v));
+    }
+
+    public static short readShort(ByteBuffer in) {
+        short v = in.getShort();
+        return in.order() == ByteOrder.BIG_ENDIAN ? v : Short.reverseBytes(v);
+    }
+
+    public static void writeChar(ByteBuffer out, char v) {
+        out.putChar(out.order() == ByteOrder.BIG_ENDIAN ? v : Character.reverseBytes(v));
+    }
+
+    public static char readChar(ByteBuffer in) {
+        char v = in.getChar();
+        return in.order() == ByteOrder.BIG_ENDIAN ? v : Character.reverseBytes(v);
+    }
+
+    public static void writeInt(ByteBuffer out, int v) {
+        out.putInt(out.order() == ByteOrder.BIG_ENDIAN ? v : Integer.reverseBytes(v));
+    }
+
+    public static int readInt(ByteBuffer in) {
+        int v = in.getInt();
+        return in.order() == ByteOrder.BIG_ENDIAN ? v : Integer.reverseBytes(v);
+    }
+
+    public static void writeLong(ByteBuffer out, long v) {
+        out.putLong(out.order() == ByteOrder.BIG_ENDIAN ? v : Long.reverseBytes(v));
+    }
+
+    public static long readLong(ByteBuffer in) {
+        long v = in.getLong();
+        return in.order() == ByteOrder.BIG_ENDIAN ? v : Long.reverseBytes(v);
+    }
+
+    // NaNs are collapsed like DataOutput does
+
+    public static void writeFloat(ByteBuffer out, float v) {
+        writeInt(out, Float.floatToIntBits(v));
+    }
+
+    public static float readFloat(ByteBuffer in) {
+        return Float.intBitsToFloat(readInt(in));
+    }
+
+    public static void writeDouble(ByteBuffer out, double v) {
+        writeLong(out, Double.doubleToLongBits(v));
+    }
+
+    public static double readDouble(ByteBuffer in) {
+        return Double.longBitsToDouble(readLong(in));
+    }
+
+    public static void writeCompactIntArray(ByteBuffer out, int[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        for (int aV : v) {
+            writeCompactInt(out, aV);
+        }
+    }
+
+    public static int[] readCompactIntArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        int[] v = new int[length];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = readCompactInt(in);
+        }
+        return v;
+    }
+
+    public static void writeCompactLongArray(ByteBuffer out, long[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        for (long aV : v) {
+            writeCompactLong(out, aV);
+        }
+    }
+
+    public static long[] readCompactLongArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        long[] v = new long[length];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = readCompactLong(in);
+        }
+        return v;
+    }
+
+    public static void writeDeltaIntArray(ByteBuffer out, int[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                writeInt(out, v[i]);
+            } else {
+                writeCompactInt(out, v[i] - v[i - 1]);
+            }
+        }
+    }
+
+    public static int[] readDeltaIntArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        int[] v = new int[length];
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                v[i] = readInt(in);
+            } else {
+                v[i] = v[i - 1] + readCompactInt(in);
+            }
+        }
+        return v;
+    }
+
+    public static void writeDeltaLongArray(ByteBuffer out, long[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                writeLong(out, v[i]);
+            } else {
+                writeCompactLong(out, v[i] - v[i - 1]);
+            }
+        }
+    }
+
+    public static long[] readDeltaLongArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        long[] v = new long[length];
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                v[i] = readLong(in);
+            } else {
+                v[i] = v[i - 1] + readCompactLong(in);
+            }
+        }
+        return v;
+    }
+
+    public static void writeDeltaInt(ByteBuffer out, int v, int from) {
+        writeCompactInt(out, v - from);
+    }
+
+    public static int readDeltaInt(ByteBuffer in, int from) {
+        return readCompactInt(in) + from;
+    }
+
+    public static void writeDeltaLong(ByteBuffer out, long v, long from) {
+        writeCompactLong(out, v - from);
+    }
+
+    public static long readDeltaLong(ByteBuffer in, long from) {
+        return readCompactLong(in) + from;
+    }
+
+    /**
+     * Writes string as its length in UTF-8 bytes (-1 for null) followed by the bytes themselves.
+     */
+    public static void writeUTFString(ByteBuffer out, String s) {
+        if (s == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        int length = utfLength(s);
+        writeCompactInt(out, length);
+        byte[] bytes = scratch(length);
+        encodeUTF(s, bytes);
+        out.put(bytes, 0, length);
+    }
+
+    public static String readUTFString(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        if (in.hasArray()) {
+            String s = decodeUTF(in.array(), in.arrayOffset() + in.position(), length);
+            in.position(in.position() + length);
+            return s;
+        }
+        byte[] bytes = scratch(length);
+        in.get(bytes, 0, length);
+        return decodeUTF(bytes, 0, length);
+    }
+
+    public static String readCanonicalUTFString(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        if (in.hasArray()) {
+            String s = canonicalUTF(in.array(), in.arrayOffset() + in.position(), length);
+            in.position(in.position() + length);
+            return s;
+        }
+        byte[] bytes = scratch(length);
+        in.get(bytes, 0, length);
+        return canonicalUTF(bytes, 0, length);
+    }
+
+    public static void writeCompactString(ByteBuffer out, String s) {
+        writeUTFString(out, s);
+    }
+
+    public static String readCompactString(ByteBuffer in) {
+        return readUTFString(in);
+    }
+
+    public static void writeBoolean(ByteBuffer out, boolean v) {
+        out.put((byte) (v ? 1 : 0));
+    }
+
+    public static boolean readBoolean(ByteBuffer in) {
+        return in.get() != 0;
+    }
+
+    // ========== Latin-1 strings ==========
+    // Length as compact int (-1 for null) followed by one byte per char.
+    // Strings with chars beyond Latin-1 are written as -2 followed by UTF string.
+
+    private static final int NON_LATIN1 = -2;
+    private static final int LATIN1_TAG = 1;
+
+    public static void writeAsciiString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        int length = s.length();
+        byte[] bytes = scratch(length);
+        if (!encodeLatin1(s, bytes)) {
+            writeCompactInt(out, NON_LATIN1);
+            writeUTFString(out, s);
+            return;
+        }
+        writeCompactInt(out, length);
+        out.write(bytes, 0, length);
+    }
+
+    public static String readAsciiString(DataInput in) throws IOException {
+        return readAsciiString(in, false);
+    }
+
+    /**
+     * Same as {@link #readAsciiString(DataInput)}, but short strings are taken from the shared cache when possible.
+     */
+    public static String readCanonicalAsciiString(DataInput in) throws IOException {
+        return readAsciiString(in, true);
+    }
+
+    public static void writeAsciiString(ByteBuffer out, String s) {
+        if (s == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        int length = s.length();
+        byte[] bytes = scratch(length);
+        if (!encodeLatin1(s, bytes)) {
+            writeCompactInt(out, NON_LATIN1);
+            writeUTFString(out, s);
+            return;
+        }
+        writeCompactInt(out, length);
+        out.put(bytes, 0, length);
+    }
+
+    public static String readAsciiString(ByteBuffer in) {
+        return readAsciiString(in, false);
+    }
+
+    public static String readCanonicalAsciiString(ByteBuffer in) {
+        return readAsciiString(in, true);
+    }
+
+    private static String readAsciiString(DataInput in, boolean canonical) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+        if (length == NON_LATIN1)
+            return canonical ? readCanonicalUTFString(in) : readUTFString(in);
+
+        byte[] bytes = scratch(length);
+        in.readFully(bytes, 0, length);
+        return decodeLatin1(bytes, 0, length, canonical);
+    }
+
+    private static String readAsciiString(ByteBuffer in, boolean canonical) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+        if (length == NON_LATIN1)
+            return canonical ? readCanonicalUTFString(in) : readUTFString(in);
+
+        String s;
+        if (in.hasArray()) {
+            s = decodeLatin1(in.array(), in.arrayOffset() + in.position(), length, canonical);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = scratch(length);
+            in.get(bytes, 0, length);
+            s = decodeLatin1(bytes, 0, length, canonical);
+        }
+        return s;
+    }
+
+    /**
+     * @return false if string has chars beyond Latin-1 (bytes are left partially filled)
+     */
+    private static boolean encodeLatin1(String s, byte[] bytes) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c > 0xFF)
+                return false;
+            bytes[i] = (byte) c;
+        }
+        return true;
+    }
+
+    private static String decodeLatin1(byte[] bytes, int offset, int length, boolean canonical) {
+        if (!canonical || length > StringCache.MAX_LENGTH)
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+
+        String s = StringCache.get(LATIN1_TAG, bytes, offset, length);
+        if (s == null) {
+            s = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+            StringCache.put(LATIN1_TAG, bytes, offset, length, s);
+        }
+        return s;
+    }
+
+    // ========== Decimal doubles ==========
+    // Value is written as compact long (mantissa << 4 | scale) meaning mantissa / 10^scale, scale is 0..14.
+    // Scale 15 is an escape: zero mantissa is followed by raw IEEE bits, mantissa 1 stands for null.
+
+    private static final int DECIMAL_SCALE_BITS = 4;
+    public static final int MAX_DECIMAL_SCALE = 14;
+    private static final long DECIMAL_RAW = 0x0F;
+    private static final long DECIMAL_NULL = 0x1F;
+    private static final double MAX_DECIMAL_MANTISSA = 1L << 59;
+    private static final double[] POW10 = new double[MAX_DECIMAL_SCALE + 1];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+
+    public static void writeDecimalDouble(DataOutput out, double v) throws IOException {
+        writeDecimalDouble(out, v, -1);
+    }
+
+    /**
+     * @param precision number of decimal digits to round value to, or -1 to write value exactly
+     */
+    public static void writeDecimalDouble(DataOutput out, double v, int precision) throws IOException {
+        long decimal = composeDecimal(v, precision);
+        writeCompactLong(out, decimal);
+        if (decimal == DECIMAL_RAW)
+            out.writeLong(Double.doubleToRawLongBits(v));
+    }
+
+    public static double readDecimalDouble(DataInput in) throws IOException {
+        long decimal = readCompactLong(in);
+        return decimal == DECIMAL_RAW ? Double.longBitsToDouble(in.readLong()) : decomposeDecimal(decimal);
+    }
+
+    public static void writeDecimalFloat(DataOutput out, float v) throws IOException {
+        writeDecimalFloat(out, v, -1);
+    }
+
+    public static void writeDecimalFloat(DataOutput out, float v, int precision) throws IOException {
+        long decimal = composeDecimal(v, precision);
+        writeCompactLong(out, decimal);
+        if (decimal == DECIMAL_RAW)
+            out.writeInt(Float.floatToRawIntBits(v));
+    }
+
+    public static float readDecimalFloat(DataInput in) throws IOException {
+        long decimal = readCompactLong(in);
+        return decimal == DECIMAL_RAW ? Float.intBitsToFloat(in.readInt()) : (float) decomposeDecimal(decimal);
+    }
+
+    public static void writeDecimalDoubleObject(DataOutput out, Double v, int precision) throws IOException {
+        if (v == null)
+            writeCompactLong(out, DECIMAL_NULL);
+        else
+            writeDecimalDouble(out, v, precision);
+    }
+
+    public static Double readDecimalDoubleObject(DataInput in) throws IOException {
+        long decimal = readCompactLong(in);
+        if (decimal == DECIMAL_NULL)
+            return null;
+        return decimal == DECIMAL_RAW ? Double.longBitsToDouble(in.readLong()) : decomposeDecimal(decimal);
+    }
+
+    public static void writeDecimalFloatObject(DataOutput out, Float v, int precision) throws IOException {
+        if (v == null)
+            writeCompactLong(out, DECIMAL_NULL);
+        else
+            writeDecimalFloat(out, v, precision);
+    }
+
+    public static Float readDecimalFloatObject(DataInput in) throws IOException {
+        long decimal = readCompactLong(in);
+        if (decimal == DECIMAL_NULL)
+            return null;
+        return decimal == DECIMAL_RAW ? Float.intBitsToFloat(in.readInt()) : (float) decomposeDecimal(decimal);
+    }
+
+    public static void writeDecimalDouble(ByteBuffer out, double v) {
+        writeDecimalDouble(out, v, -1);
+    }
+
+    public static void writeDecimalDouble(ByteBuffer out, double v, int precision) {
+        long decimal = composeDecimal(v, precision);
+        writeCompactLong(out, decimal);
+        if (decimal == DECIMAL_RAW)
+            writeLong(out, Double.doubleToRawLongBits(v));
+    }
+
+    public static double readDecimalDouble(ByteBuffer in) {
+        long decimal = readCompactLong(in);
+        return decimal == DECIMAL_RAW ? readDouble(in) : decomposeDecimal(decimal);
+    }
+
+    public static void writeDecimalFloat(ByteBuffer out, float v) {
+        writeDecimalFloat(out, v, -1);
+    }
+
+    public static void writeDecimalFloat(ByteBuffer out, float v, int precision) {
+        long decimal = composeDecimal(v, precision);
+        writeCompactLong(out, decimal);
+        if (decimal == DECIMAL_RAW)
+            writeInt(out, Float.floatToRawIntBits(v));
+    }
+
+    public static float readDecimalFloat(ByteBuffer in) {
+        long decimal = readCompactLong(in);
+        return decimal == DECIMAL_RAW ? readFloat(in) : (float) decomposeDecimal(decimal);
+    }
+
+    public static void writeDecimalDoubleObject(ByteBuffer out, Double v, int precision) {
+        if (v == null)
+            writeCompactLong(out, DECIMAL_NULL);
+        else
+            writeDecimalDouble(out, v, precision);
+    }
+
+    public static Double readDecimalDoubleObject(ByteBuffer in) {
+        long decimal = readCompactLong(in);
+        if (decimal == DECIMAL_NULL)
+            return null;
+        return decimal == DECIMAL_RAW ? readDouble(in) : decomposeDecimal(decimal);
+    }
+
+    public static void writeDecimalFloatObject(ByteBuffer out, Float v, int precision) {
+        if (v == null)
+            writeCompactLong(out, DECIMAL_NULL);
+        else
+            writeDecimalFloat(out, v, precision);
+    }
+
+    public static Float readDecimalFloatObject(ByteBuffer in) {
+        long decimal = readCompactLong(in);
+        if (decimal == DECIMAL_NULL)
+            return null;
+        return decimal == DECIMAL_RAW ? readFloat(in) : (float) decomposeDecimal(decimal);
+    }
+
+    /**
+     * Writes difference between decimal mantissas of value and base, both taken at the scale of the value.
+     * Falls back to the escape with raw bits if value has no short decimal form or base is too far.
+     */
+    public static void writeDeltaDouble(DataOutput out, double v, double from) throws IOException {
+        long delta = composeDeltaDecimal(v, from);
+        writeCompactLong(out, delta);
+        if (delta == DECIMAL_RAW)
+            out.writeLong(Double.doubleToRawLongBits(v));
+    }
+
+    public static double readDeltaDouble(DataInput in, double from) throws IOException {
+        long delta = readCompactLong(in);
+        return delta == DECIMAL_RAW ? Double.longBitsToDouble(in.readLong()) : decomposeDeltaDecimal(delta, from);
+    }
+
+    /**
+     * First element is written by {@link #writeDecimalDouble(DataOutput, double)}, following ones as deltas to previous.
+     */
+    public static void writeDeltaDoubleArray(DataOutput out, double[] v) throws IOException {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                writeDecimalDouble(out, v[i]);
+            } else {
+                writeDeltaDouble(out, v[i], v[i - 1]);
+            }
+        }
+    }
+
+    public static double[] readDeltaDoubleArray(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        double[] v = new double[length];
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                v[i] = readDecimalDouble(in);
+            } else {
+                v[i] = readDeltaDouble(in, v[i - 1]);
+            }
+        }
+        return v;
+    }
+
+    public static void writeDeltaDouble(ByteBuffer out, double v, double from) {
+        long delta = composeDeltaDecimal(v, from);
+        writeCompactLong(out, delta);
+        if (delta == DECIMAL_RAW)
+            writeLong(out, Double.doubleToRawLongBits(v));
+    }
+
+    public static double readDeltaDouble(ByteBuffer in, double from) {
+        long delta = readCompactLong(in);
+        return delta == DECIMAL_RAW ? readDouble(in) : decomposeDeltaDecimal(delta, from);
+    }
+
+    public static void writeDeltaDoubleArray(ByteBuffer out, double[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                writeDecimalDouble(out, v[i]);
+            } else {
+                writeDeltaDouble(out, v[i], v[i - 1]);
+            }
+        }
+    }
+
+    public static double[] readDeltaDoubleArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        double[] v = new double[length];
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                v[i] = readDecimalDouble(in);
+            } else {
+                v[i] = readDeltaDouble(in, v[i - 1]);
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Finds the smallest scale which represents value exactly (after rounding to given precision, if any).
+     * @return decimal representation or DECIMAL_RAW if there is none (NaN, infinities, -0.0, too many digits)
+     */
+    static long composeDecimal(double v, int precision) {
+        if (precision >= 0 && precision <= MAX_DECIMAL_SCALE) {
+            double mantissa = Math.rint(v * POW10[precision]);
+            if (!(Math.abs(mantissa) < MAX_DECIMAL_MANTISSA) || Double.doubleToRawLongBits(v) == Long.MIN_VALUE)
+                return DECIMAL_RAW;
+            long m = (long) mantissa;
+            int scale = precision;
+            while (scale > 0 && m % 10 == 0) {
+                m /= 10;
+                scale--;
+            }
+            return m << DECIMAL_SCALE_BITS | scale;
+        }
+        for (int scale = 0; scale <= MAX_DECIMAL_SCALE; scale++) {
+            double mantissa = Math.rint(v * POW10[scale]);
+            if (!(Math.abs(mantissa) < MAX_DECIMAL_MANTISSA))
+                return DECIMAL_RAW;
+            long m = (long) mantissa; // -0.0 becomes 0 here and fails the check below
+            if (Double.doubleToRawLongBits(m / POW10[scale]) == Double.doubleToRawLongBits(v))
+                return m << DECIMAL_SCALE_BITS | scale;
+        }
+        return DECIMAL_RAW;
+    }
+
+    static long composeDecimal(float v, int precision) {
+        if (precision >= 0 && precision <= MAX_DECIMAL_SCALE)
+            return composeDecimal((double) v, precision);
+        for (int scale = 0; scale <= MAX_DECIMAL_SCALE; scale++) {
+            double mantissa = Math.rint(v * POW10[scale]);
+            if (!(Math.abs(mantissa) < MAX_DECIMAL_MANTISSA))
+                return DECIMAL_RAW;
+            long m = (long) mantissa;
+            if (Float.floatToRawIntBits((float) (m / POW10[scale])) == Float.floatToRawIntBits(v))
+                return m << DECIMAL_SCALE_BITS | scale;
+        }
+        return DECIMAL_RAW;
+    }
+
+    static long composeDeltaDecimal(double v, double from) {
+        long decimal = composeDecimal(v, -1);
+        if (decimal == DECIMAL_RAW)
+            return DECIMAL_RAW;
+        int scale = (int) (decimal & 0x0F);
+        double base = Math.rint(from * POW10[scale]);
+        if (!(Math.abs(base) < MAX_DECIMAL_MANTISSA))
+            return DECIMAL_RAW;
+        long delta = (decimal >> DECIMAL_SCALE_BITS) - (long) base;
+        if (!(Math.abs(delta) < (long) MAX_DECIMAL_MANTISSA))
+            return DECIMAL_RAW;
+        return delta << DECIMAL_SCALE_BITS | scale;
+    }
+
+    static double decomposeDeltaDecimal(long delta, double from) {
+        int scale = (int) (delta & 0x0F);
+        if (scale > MAX_DECIMAL_SCALE)
+            throw new IllegalArgumentException("Unexpected decimal escape " + delta);
+        return ((delta >> DECIMAL_SCALE_BITS) + (long) Math.rint(from * POW10[scale])) / POW10[scale];
+    }
+
+    static double decomposeDecimal(long decimal) {
+        int scale = (int) (decimal & 0x0F);
+        if (scale > MAX_DECIMAL_SCALE)
+            throw new IllegalArgumentException("Unexpected decimal escape " + decimal);
+        return (decimal >> DECIMAL_SCALE_BITS) / POW10[scale];
+    }
+
+    // ========== Delta-of-delta arrays ==========
+    // Length as compact int (-1 for null), v[0] and v[1] - v[0] as compact numbers,
+    // then differences between adjacent deltas. Evenly spaced timestamps cost one byte per element.
+
+    public static void writeDeltaOfDeltaIntArray(DataOutput out, int[] v) throws IOException {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        int prevDelta = 0;
+        for (int i = 0; i < v.length; i++) {
+            int delta = i == 0 ? v[i] : v[i] - v[i - 1];
+            writeCompactInt(out, delta - prevDelta);
+            prevDelta = i == 0 ? 0 : delta;
+        }
+    }
+
+    public static int[] readDeltaOfDeltaIntArray(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        int[] v = new int[length];
+        int delta = 0;
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                v[i] = readCompactInt(in);
+            } else {
+                delta += readCompactInt(in);
+                v[i] = v[i - 1] + delta;
+            }
+        }
+        return v;
+    }
+
+    public static void writeDeltaOfDeltaIntArray(ByteBuffer out, int[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        int prevDelta = 0;
+        for (int i = 0; i < v.length; i++) {
+            int delta = i == 0 ? v[i] : v[i] - v[i - 1];
+            writeCompactInt(out, delta - prevDelta);
+            prevDelta = i == 0 ? 0 : delta;
+        }
+    }
+
+    public static int[] readDeltaOfDeltaIntArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        int[] v = new int[length];
+        int delta = 0;
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                v[i] = readCompactInt(in);
+            } else {
+                delta += readCompactInt(in);
+                v[i] = v[i - 1] + delta;
+            }
+        }
+        return v;
+    }
+
+    public static void writeDeltaOfDeltaLongArray(DataOutput out, long[] v) throws IOException {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        long prevDelta = 0;
+        for (int i = 0; i < v.length; i++) {
+            long delta = i == 0 ? v[i] : v[i] - v[i - 1];
+            writeCompactLong(out, delta - prevDelta);
+            prevDelta = i == 0 ? 0 : delta;
+        }
+    }
+
+    public static long[] readDeltaOfDeltaLongArray(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        long[] v = new long[length];
+        long delta = 0;
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                v[i] = readCompactLong(in);
+            } else {
+                delta += readCompactLong(in);
+                v[i] = v[i - 1] + delta;
+            }
+        }
+        return v;
+    }
+
+    public static void writeDeltaOfDeltaLongArray(ByteBuffer out, long[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        long prevDelta = 0;
+        for (int i = 0; i < v.length; i++) {
+            long delta = i == 0 ? v[i] : v[i] - v[i - 1];
+            writeCompactLong(out, delta - prevDelta);
+            prevDelta = i == 0 ? 0 : delta;
+        }
+    }
+
+    public static long[] readDeltaOfDeltaLongArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        long[] v = new long[length];
+        long delta = 0;
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                v[i] = readCompactLong(in);
+            } else {
+                delta += readCompactLong(in);
+                v[i] = v[i - 1] + delta;
+            }
+        }
+        return v;
+    }
+
+    // ========== XOR-compressed doubles ==========
+    // Length as compact int (-1 for null), then compact size of the bit stream in bytes and the bit stream itself.
+    // Bit stream holds raw bits of the first element, then for each next one XOR with the previous:
+    // '0' - same value, '10' - meaningful bits fit into the previous window, '11' - 5 bits of leading zeros,
+    // 6 bits of meaningful length minus one, and meaningful bits.
+
+    private static final int MAX_XOR_BITS_PER_VALUE = 2 + 5 + 6 + 64;
+
+    public static void writeXorCompressedDoubleArray(DataOutput out, double[] v) throws IOException {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        BitWriter writer = encodeXor(v);
+        writeCompactInt(out, writer.size());
+        out.write(writer.bytes(), 0, writer.size());
+    }
+
+    public static double[] readXorCompressedDoubleArray(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        int size = readCompactInt(in);
+        byte[] bytes = scratch(size);
+        in.readFully(bytes, 0, size);
+        double[] v = new double[length];
+        decodeXor(bytes, 0, size, v);
+        return v;
+    }
+
+    public static void writeXorCompressedDoubleArray(ByteBuffer out, double[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        BitWriter writer = encodeXor(v);
+        writeCompactInt(out, writer.size());
+        out.put(writer.bytes(), 0, writer.size());
+    }
+
+    public static double[] readXorCompressedDoubleArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        int size = readCompactInt(in);
+        double[] v = new double[length];
+        if (in.hasArray()) {
+            decodeXor(in.array(), in.arrayOffset() + in.position(), size, v);
+            in.position(in.position() + size);
+        } else {
+            byte[] bytes = scratch(size);
+            in.get(bytes, 0, size);
+            decodeXor(bytes, 0, size, v);
+        }
+        return v;
+    }
+
+    private static int xorCapacity(int length) {
+        return (int) Math.min(Integer.MAX_VALUE, ((long) length * MAX_XOR_BITS_PER_VALUE + 7) / 8);
+    }
+
+    /**
+     * Encodes into the scratch array while the stream fits into a retained one, so only really large outputs
+     * allocate, and then proportionally to their size rather than to the worst case.
+     */
+    private static BitWriter encodeXor(double[] v) {
+        int capacity = xorCapacity(v.length);
+        BitWriter writer = new BitWriter(scratch(Math.min(capacity, MAX_RETAINED_SCRATCH)), capacity);
+        long prev = 0;
+        int prevLeading = Integer.MAX_VALUE;
+        int prevTrailing = 0;
+        for (int i = 0; i < v.length; i++) {
+            long bits = Double.doubleToRawLongBits(v[i]);
+            if (i == 0) {
+                writer.write(bits, 64);
+            } else {
+                long xor = bits ^ prev;
+                if (xor == 0) {
+                    writer.write(0, 1);
+                } else {
+                    int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                    int trailing = Long.numberOfTrailingZeros(xor);
+                    if (leading >= prevLeading && trailing >= prevTrailing) {
+                        writer.write(0x02, 2);
+                        writer.write(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+                    } else {
+                        int meaningful = 64 - leading - trailing;
+                        writer.write(0x03, 2);
+                        writer.write(leading, 5);
+                        writer.write(meaningful - 1, 6);
+                        writer.write(xor >>> trailing, meaningful);
+                        prevLeading = leading;
+                        prevTrailing = trailing;
+                    }
+                }
+            }
+            prev = bits;
+        }
+        writer.finish();
+        return writer;
+    }
+
+    private static void decodeXor(byte[] bytes, int offset, int size, double[] v) {
+        BitReader reader = new BitReader(bytes, offset, size);
+        long prev = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < v.length; i++) {
+            if (i == 0) {
+                prev = reader.read(64);
+            } else if (reader.read(1) != 0) {
+                if (reader.read(1) != 0) {
+                    leading = (int) reader.read(5);
+                    trailing = 64 - leading - (int) reader.read(6) - 1;
+                }
+                prev ^= reader.read(64 - leading - trailing) << trailing;
+            }
+            v[i] = Double.longBitsToDouble(prev);
+        }
+    }
+
+    /**
+     * Writes bits most significant first into the given array, which grows (up to max capacity) when it's full.
+     */
+    private static class BitWriter {
+        private byte[] bytes;
+        private final int maxCapacity;
+        private int position;
+        private int current;
+        private int bitCount; // number of bits already used in current byte
+
+        BitWriter(byte[] bytes, int maxCapacity) {
+            this.bytes = bytes;
+            this.maxCapacity = maxCapacity;
+        }
+
+        void write(long value, int count) {
+            while (count > 0) {
+                int n = Math.min(8 - bitCount, count);
+                int chunk = (int) (value >>> (count - n)) & ((1 << n) - 1);
+                current |= chunk << (8 - bitCount - n);
+                bitCount += n;
+                count -= n;
+                if (bitCount == 8) {
+                    put((byte) current);
+                    current = 0;
+                    bitCount = 0;
+                }
+            }
+        }
+
+        void finish() {
+            if (bitCount > 0)
+                put((byte) current);
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        /**
+         * @return number of bytes written
+         */
+        int size() {
+            return position;
+        }
+
+        private void put(byte b) {
+            if (position == bytes.length)
+                bytes = Arrays.copyOf(bytes, (int) Math.min(maxCapacity, 2L * bytes.length));
+            bytes[position++] = b;
+        }
+    }
+
+    private static class BitReader {
+        private final byte[] bytes;
+        private final int limit;
+        private int position;
+        private int bitCount; // number of bits already read from current byte
+
+        BitReader(byte[] bytes, int offset, int size) {
+            this.bytes = bytes;
+            this.position = offset;
+            this.limit = offset + size;
+        }
+
+        long read(int count) {
+            long result = 0;
+            while (count > 0) {
+                if (position >= limit)
+                    throw new IllegalArgumentException("Unexpected end of XOR-compressed data");
+                int n = Math.min(8 - bitCount, count);
+                int chunk = ((bytes[position] & 0xFF) >>> (8 - bitCount - n)) & ((1 << n) - 1);
+                result = (result << n) | chunk;
+                bitCount += n;
+                count -= n;
+                if (bitCount == 8) {
+                    position++;
+                    bitCount = 0;
+                }
+            }
+            return result;
+        }
+    }
+
+    // ========== Bulk primitive arrays ==========
+    // Length as compact int (-1 for null) followed by big-endian elements copied in chunks through the scratch array.
+
+    private static final int BULK_CHUNK = 4096;
+
+    public static void writeByteArray(DataOutput out, byte[] v) throws IOException {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        out.write(v);
+    }
+
+    public static byte[] readByteArray(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        byte[] v = new byte[length];
+        in.readFully(v);
+        return v;
+    }
+
+    public static void writeByteArray(ByteBuffer out, byte[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        out.put(v);
+    }
+
+    public static byte[] readByteArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        byte[] v = new byte[length];
+        in.get(v);
+        return v;
+    }
+
+    public static void writeShortArray(DataOutput out, short[] v) throws IOException {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        writeBulk(out, v, v.length, 1);
+    }
+
+    public static short[] readShortArray(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        short[] v = new short[length];
+        readBulk(in, v, length, 1);
+        return v;
+    }
+
+    public static void writeShortArray(ByteBuffer out, short[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        putBulk(out, v, 0, v.length);
+        out.position(out.position() + (v.length << 1));
+    }
+
+    public static short[] readShortArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        short[] v = new short[length];
+        getBulk(in, v, 0, length);
+        in.position(in.position() + (length << 1));
+        return v;
+    }
+
+    public static void writeCharArray(DataOutput out, char[] v) throws IOException {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        writeBulk(out, v, v.length, 1);
+    }
+
+    public static char[] readCharArray(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        char[] v = new char[length];
+        readBulk(in, v, length, 1);
+        return v;
+    }
+
+    public static void writeCharArray(ByteBuffer out, char[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        putBulk(out, v, 0, v.length);
+        out.position(out.position() + (v.length << 1));
+    }
+
+    public static char[] readCharArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        char[] v = new char[length];
+        getBulk(in, v, 0, length);
+        in.position(in.position() + (length << 1));
+        return v;
+    }
+
+    public static void writeIntArray(DataOutput out, int[] v) throws IOException {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        writeBulk(out, v, v.length, 2);
+    }
+
+    public static int[] readIntArray(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        int[] v = new int[length];
+        readBulk(in, v, length, 2);
+        return v;
+    }
+
+    public static void writeIntArray(ByteBuffer out, int[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        putBulk(out, v, 0, v.length);
+        out.position(out.position() + (v.length << 2));
+    }
+
+    public static int[] readIntArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        int[] v = new int[length];
+        getBulk(in, v, 0, length);
+        in.position(in.position() + (length << 2));
+        return v;
+    }
+
+    public static void writeLongArray(DataOutput out, long[] v) throws IOException {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        writeBulk(out, v, v.length, 3);
+    }
+
+    public static long[] readLongArray(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        long[] v = new long[length];
+        readBulk(in, v, length, 3);
+        return v;
+    }
+
+    public static void writeLongArray(ByteBuffer out, long[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        putBulk(out, v, 0, v.length);
+        out.position(out.position() + (v.length << 3));
+    }
+
+    public static long[] readLongArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        long[] v = new long[length];
+        getBulk(in, v, 0, length);
+        in.position(in.position() + (length << 3));
+        return v;
+    }
+
+    public static void writeFloatArray(DataOutput out, float[] v) throws IOException {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        writeBulk(out, v, v.length, 2);
+    }
+
+    public static float[] readFloatArray(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        float[] v = new float[length];
+        readBulk(in, v, length, 2);
+        return v;
+    }
+
+    public static void writeFloatArray(ByteBuffer out, float[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        putBulk(out, v, 0, v.length);
+        out.position(out.position() + (v.length << 2));
+    }
+
+    public static float[] readFloatArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        float[] v = new float[length];
+        getBulk(in, v, 0, length);
+        in.position(in.position() + (length << 2));
+        return v;
+    }
+
+    public static void writeDoubleArray(DataOutput out, double[] v) throws IOException {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        writeBulk(out, v, v.length, 3);
+    }
+
+    public static double[] readDoubleArray(DataInput in) throws IOException {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        double[] v = new double[length];
+        readBulk(in, v, length, 3);
+        return v;
+    }
+
+    public static void writeDoubleArray(ByteBuffer out, double[] v) {
+        if (v == null) {
+            writeCompactInt(out, -1);
+            return;
+        }
+
+        writeCompactInt(out, v.length);
+        putBulk(out, v, 0, v.length);
+        out.position(out.position() + (v.length << 3));
+    }
+
+    public static double[] readDoubleArray(ByteBuffer in) {
+        int length = readCompactInt(in);
+        if (length == -1)
+            return null;
+
+        double[] v = new double[length];
+        getBulk(in, v, 0, length);
+        in.position(in.position() + (length << 3));
+        return v;
+    }
+
+    private static void writeBulk(DataOutput out, Object array, int length, int shift) throws IOException {
+        byte[] bytes = scratch(Math.min(length << shift, BULK_CHUNK));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int chunk = Math.min(bytes.length, BULK_CHUNK) >> shift;
+        for (int i = 0; i < length; i += chunk) {
+            int n = Math.min(length - i, chunk);
+            buffer.clear();
+            putBulk(buffer, array, i, n);
+            out.write(bytes, 0, n << shift);
+        }
+    }
+
+    private static void readBulk(DataInput in, Object array, int length, int shift) throws IOException {
+        byte[] bytes = scratch(Math.min(length << shift, BULK_CHUNK));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int chunk = Math.min(bytes.length, BULK_CHUNK) >> shift;
+        for (int i = 0; i < length; i += chunk) {
+            int n = Math.min(length - i, chunk);
+            in.readFully(bytes, 0, n << shift);
+            buffer.clear();
+            getBulk(buffer, array, i, n);
+        }
+    }
+
+    /**
+     * Copies elements into a big-endian view of the buffer starting at its position; position itself is not changed.
+     */
+    private static void putBulk(ByteBuffer buffer, Object array, int offset, int length) {
+        buffer = bigEndian(buffer);
+        if (array instanceof double[])
+            buffer.asDoubleBuffer().put((double[]) array, offset, length);
+        else if (array instanceof long[])
+            buffer.asLongBuffer().put((long[]) array, offset, length);
+        else if (array instanceof int[])
+            buffer.asIntBuffer().put((int[]) array, offset, length);
+        else if (array instanceof float[])
+            buffer.asFloatBuffer().put((float[]) array, offset, length);
+        else if (array instanceof short[])
+            buffer.asShortBuffer().put((short[]) array, offset, length);
+        else
+            buffer.asCharBuffer().put((char[]) array, offset, length);
+    }
+
+    /**
+     * Copies elements from a big-endian view of the buffer starting at its position; position itself is not changed.
+     */
+    private static void getBulk(ByteBuffer buffer, Object array, int offset, int length) {
+        buffer = bigEndian(buffer);
+        if (array instanceof double[])
+            buffer.asDoubleBuffer().get((double[]) array, offset, length);
+        else if (array instanceof long[])
+            buffer.asLongBuffer().get((long[]) array, offset, length);
+        else if (array instanceof int[])
+            buffer.asIntBuffer().get((int[]) array, offset, length);
+        else if (array instanceof float[])
+            buffer.asFloatBuffer().get((float[]) array, offset, length);
+        else if (array instanceof short[])
+            buffer.asShortBuffer().get((short[]) array, offset, length);
+        else
+            buffer.asCharBuffer().get((char[]) array, offset, length);
+    }
+
+    private static ByteBuffer bigEndian(ByteBuffer buffer) {
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? buffer : buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    // ========== Codec classes ==========
+    // With "codecs" processor option generated static methods live in a companion class of the same package
+    // named <Name>EgenCodec (Outer_NestedEgenCodec for nested classes) instead of the class itself.
+
+    public static final String CODEC_SUFFIX = "EgenCodec";
+
+    /**
+     * @return companion codec class of the given class or the class itself if it has no codec class
+     */
+    public static Class<?> codecClass(Class<?> type) {
+        String name = type.getName();
+        int dot = name.lastIndexOf('.');
+        String codecName = name.substring(0, dot + 1) + name.substring(dot + 1).replace('$', '_') + CODEC_SUFFIX;
+        try {
+            return Class.forName(codecName, false, type.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return type;
+        }
+    }
+
+    // ========== Flattened hierarchies ==========
+    // Class with @AutoSerializable(flatten = true) has a static marker field and writes its superclasses' fields
+    // itself, so generated writeObject()/readObject() of superclasses skip their part for its instances.
+
+    public static final String FLATTEN_MARKER = "egen$flatten";
+
+    private static final ClassValue<Boolean> FLATTENED = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                codecClass(type).getDeclaredField(FLATTEN_MARKER);
+                return true;
+            } catch (NoSuchFieldException e) {
+                return false;
+            }
+        }
+    };
+
+    /**
+     * @return true if some class from runtimeClass (inclusive) up to level (exclusive) is flattened
+     */
+    public static boolean isFlattenedBelow(Class<?> runtimeClass, Class<?> level) {
+        for (Class<?> c = runtimeClass; c != level && c != null; c = c.getSuperclass()) {
+            if (FLATTENED.get(c))
+                return true;
+        }
+        return false;
+    }
+
+    // ========== Presence flags ==========
+    // Classes with more than 64 presence groups keep flags in several longs. They are written as compact long mask
+    // of non-zero words followed by non-zero words as compact longs, number of words is known to both sides.
+
+    public static final int MAX_FLAGS_WORDS = 64;
+
+    public static void writeFlags(DataOutput out, long[] flags) throws IOException {
+        long mask = flagsMask(flags);
+        writeCompactLong(out, mask);
+        for (int i = 0; i < flags.length; i++) {
+            if ((mask & (1L << i)) != 0)
+                writeCompactLong(out, flags[i]);
+        }
+    }
+
+    public static long[] readFlags(DataInput in, int words) throws IOException {
+        long mask = readCompactLong(in);
+        checkFlagsMask(mask, words);
+        long[] flags = new long[words];
+        for (int i = 0; i < words; i++) {
+            if ((mask & (1L << i)) != 0)
+                flags[i] = readCompactLong(in);
+        }
+        return flags;
+    }
+
+    public static void writeFlags(ByteBuffer out, long[] flags) {
+        long mask = flagsMask(flags);
+        writeCompactLong(out, mask);
+        for (int i = 0; i < flags.length; i++) {
+            if ((mask & (1L << i)) != 0)
+                writeCompactLong(out, flags[i]);
+        }
+    }
+
+    public static long[] readFlags(ByteBuffer in, int words) {
+        long mask = readCompactLong(in);
+        checkFlagsMask(mask, words);
+        long[] flags = new long[words];
+        for (int i = 0; i < words; i++) {
+            if ((mask & (1L << i)) != 0)
+                flags[i] = readCompactLong(in);
+        }
+        return flags;
+    }
+
+    private static long flagsMask(long[] flags) {
+        if (flags.length > MAX_FLAGS_WORDS)
+            throw new IllegalArgumentException("Too many flags words: " + flags.length);
+        long mask = 0;
+        for (int i = 0; i < flags.length; i++) {
+            if (flags[i] != 0)
+                mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    private static void checkFlagsMask(long mask, int words) {
+        if (words < MAX_FLAGS_WORDS && (mask >>> words) != 0)
+            throw new IllegalArgumentException("Malformed flags mask " + Long.toHexString(mask) + " for " + words + " words");
+    }
+
+    // ========== Bit fields ==========
+
+    /**
+     * @return offset of the value from min, which generated code packs into a bit field word
+     * @throws IllegalArgumentException if value is out of range
+     */
+    public static long packRange(long value, long min, long max) {
+        if (value < min || value > max)
+            throw new IllegalArgumentException("Value " + value + " is out of range [" + min + ", " + max + "]");
+        return value - min;
+    }
+
+    // ========== Ordinal code tables ==========
+    // Generated classes keep instances resolved by findByCode() in a static table indexed by code,
+    // codes outside of the table are resolved by findByCode() every time.
+
+    public static final int CODE_TABLE_SIZE = 1024;
+
+    public static <E> E cachedByCode(E[] table, int code) {
+        return code >= 0 && code < table.length ? table[code] : null;
+    }
+
+    public static <E> E cacheByCode(E[] table, int code, E value) {
+        if (code >= 0 && code < table.length)
+            table[code] = value;
+        return value;
+    }
+
+    // ========== UTF-8 and scratch buffer ==========
+
+    private static byte[] numberScratch() {
+        byte[] bytes = NUMBER_SCRATCH.get();
+        if (bytes == null) {
+            bytes = new byte[9];
+            NUMBER_SCRATCH.set(bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return per-thread scratch array of at least given size; large arrays are not retained.
+     */
+    static byte[] scratch(int size) {
+        byte[] bytes = SCRATCH.get();
+        if (bytes == null || bytes.length < size) {
+            bytes = new byte[Math.max(size, 64)];
+            if (size <= MAX_RETAINED_SCRATCH)
+                SCRATCH.set(bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * Encodes compact int into given array.
+     * @return position after the last written byte
+     */
+    static int encodeCompactInt(byte[] bytes, int pos, int v) {
+        if (v >= -0x40 && v < 0x40) {
+            bytes[pos++] = (byte) (v & 0x7F);
+        } else if (v >= -0x2000 && v < 0x2000) {
+            bytes[pos++] = (byte) (0x80 | ((v >> 8) & 0x3F));
+            bytes[pos++] = (byte) v;
+        } else if (v >= -0x100000 && v < 0x100000) {
+            bytes[pos++] = (byte) (0xC0 | ((v >> 16) & 0x1F));
+            bytes[pos++] = (byte) (v >> 8);
+            bytes[pos++] = (byte) v;
+        } else if (v >= -0x08000000 && v < 0x08000000) {
+            bytes[pos++] = (byte) (0xE0 | ((v >> 24) & 0x0F));
+            bytes[pos++] = (byte) (v >> 16);
+            bytes[pos++] = (byte) (v >> 8);
+            bytes[pos++] = (byte) v;
+        } else {
+            bytes[pos++] = (byte) (v >= 0 ? 0xF0 : 0xF7);
+            pos = encodeInt(bytes, pos, v);
+        }
+        return pos;
+    }
+
+    /**
+     * Encodes compact long into given array.
+     * @return position after the last written byte
+     */
+    static int encodeCompactLong(byte[] bytes, int pos, long v) {
+        if (v == (long) (int) v)
+            return encodeCompactInt(bytes, pos, (int) v);
+        int hi = (int) (v >>> 32);
+        if (hi >= -0x04 && hi < 0x04) {
+            bytes[pos++] = (byte) (0xF0 | (hi & 0x07));
+        } else if (hi >= -0x0200 && hi < 0x0200) {
+            bytes[pos++] = (byte) (0xF8 | ((hi >> 8) & 0x03));
+            bytes[pos++] = (byte) hi;
+        } else if (hi >= -0x010000 && hi < 0x010000) {
+            bytes[pos++] = (byte) (0xFC | ((hi >> 16) & 0x01));
+            bytes[pos++] = (byte) (hi >> 8);
+            bytes[pos++] = (byte) hi;
+        } else if (hi >= -0x800000 && hi < 0x800000) {
+            bytes[pos++] = (byte) 0xFE;
+            bytes[pos++] = (byte) (hi >> 16);
+            bytes[pos++] = (byte) (hi >> 8);
+            bytes[pos++] = (byte) hi;
+        } else {
+            bytes[pos++] = (byte) 0xFF;
+            pos = encodeInt(bytes, pos, hi);
+        }
+        return encodeInt(bytes, pos, (int) v);
+    }
+
+    private static int encodeInt(byte[] bytes, int pos, int v) {
+        bytes[pos++] = (byte) (v >> 24);
+        bytes[pos++] = (byte) (v >> 16);
+        bytes[pos++] = (byte) (v >> 8);
+        bytes[pos++] = (byte) v;
+        return pos;
+    }
+
+    private static final int UTF_TAG = 0;
+
+    private static String canonicalUTF(byte[] bytes, int offset, int length) {
+        if (length > StringCache.MAX_LENGTH)
+            return decodeUTF(bytes, offset, length);
+
+        String s = StringCache.get(UTF_TAG, bytes, offset, length);
+        if (s == null) {
+            s = decodeUTF(bytes, offset, length);
+            StringCache.put(UTF_TAG, bytes, offset, length, s);
+        }
+        return s;
+    }
+
+    private static int utfLength(String s) {
+        int length = s.length();
+        int utfLength = length;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80)
+                continue;
+            if (c < 0x800) {
+                utfLength++;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                utfLength += 2; // surrogate pair takes 4 bytes
+                i++;
+            } else {
+                utfLength += 2;
+            }
+        }
+        return utfLength;
+    }
+
+    private static void encodeUTF(String s, byte[] bytes) {
+        int length = s.length();
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[pos++] = (byte) (0xC0 | (c >> 6));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                bytes[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                bytes[pos++] = (byte) (0xE0 | (c >> 12));
+                bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static String decodeUTF(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int pos = offset;
+        while (pos < end && bytes[pos] >= 0)
+            pos++;
+        if (pos == end)
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+
+        char[] chars = new char[length];
+        int count = pos - offset;
+        for (int i = offset; i < pos; i++)
+            chars[i - offset] = (char) bytes[i];
+        while (pos < end) {
+            int b = bytes[pos++] & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if (b < 0xE0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (bytes[pos++] & 0x3F));
+            } else if (b < 0xF0) {
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((bytes[pos++] & 0x3F) << 6) | (bytes[pos++] & 0x3F));
+            } else {
+                int codePoint = ((b & 0x07) << 18) | ((bytes[pos++] & 0x3F) << 12) |
+                        ((bytes[pos++] & 0x3F) << 6) | (bytes[pos++] & 0x3F);
+                chars[count++] = Character.highSurrogate(codePoint);
+                chars[count++] = Character.lowSurrogate(codePoint);
+            }
+        }
+        return new String(chars, 0, count);
+    }
 
 //    public static void writeInlineObject(ObjectOutput out, Externalizable o) throws IOException {
 //        out.writeByte(o == null ? -1 : 0);
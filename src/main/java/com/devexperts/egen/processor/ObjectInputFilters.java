@@ -0,0 +1,146 @@
+package com.devexperts.egen.processor;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+
+/**
+ * Access to serialization filter of {@link ObjectInputStream}. The filter API is {@code java.io.ObjectInputFilter}
+ * since Java 9 and {@code sun.misc.ObjectInputFilter} since 8u121, so it is called reflectively;
+ * without either of them streams have no filter and all classes are allowed.
+ */
+final class ObjectInputFilters {
+    private static final Method GET_FILTER; // stream's filter, instance or static (ObjectInputStream) method
+    private static final Method SET_FILTER; // instance or static (ObjectInputStream, filter) method
+    private static final Method CHECK_INPUT; // filter.checkInput(FilterInfo)
+    private static final Class<?> FILTER_INFO;
+
+    static {
+        Method getFilter = null;
+        Method setFilter = null;
+        Method checkInput = null;
+        Class<?> filterInfo = null;
+        try {
+            Class<?> filter = Class.forName("java.io.ObjectInputFilter");
+            filterInfo = Class.forName("java.io.ObjectInputFilter$FilterInfo");
+            getFilter = ObjectInputStream.class.getMethod("getObjectInputFilter");
+            setFilter = ObjectInputStream.class.getMethod("setObjectInputFilter", filter);
+            checkInput = filter.getMethod("checkInput", filterInfo);
+        } catch (ReflectiveOperationException e) {
+            try {
+                Class<?> filter = Class.forName("sun.misc.ObjectInputFilter");
+                Class<?> config = Class.forName("sun.misc.ObjectInputFilter$Config");
+                filterInfo = Class.forName("sun.misc.ObjectInputFilter$FilterInfo");
+                getFilter = config.getMethod("getObjectInputFilter", ObjectInputStream.class);
+                setFilter = config.getMethod("setObjectInputFilter", ObjectInputStream.class, filter);
+                checkInput = filter.getMethod("checkInput", filterInfo);
+            } catch (ReflectiveOperationException ignored) {
+                getFilter = null;
+                setFilter = null;
+                checkInput = null;
+                filterInfo = null;
+            }
+        }
+        GET_FILTER = getFilter;
+        SET_FILTER = setFilter;
+        CHECK_INPUT = checkInput;
+        FILTER_INFO = filterInfo;
+    }
+
+    private ObjectInputFilters() {
+    }
+
+    /**
+     * @return filter of given stream, or null if there is none
+     */
+    static Object getFilter(ObjectInputStream in) {
+        return GET_FILTER == null ? null : invoke(GET_FILTER, in);
+    }
+
+    /**
+     * Installs filter of {@code from} stream into {@code to} stream, unless it already has the same one.
+     */
+    static void copyFilter(ObjectInputStream from, ObjectInputStream to) {
+        Object filter = getFilter(from);
+        if (filter != null && filter != getFilter(to))
+            invoke(SET_FILTER, to, filter);
+    }
+
+    /**
+     * Checks class read from the stream like {@link ObjectInputStream} checks class descriptors.
+     *
+     * @throws InvalidClassException if filter rejects the class
+     */
+    static void checkClass(Object filter, Class<?> type, long depth, long references) throws InvalidClassException {
+        if (filter == null)
+            return;
+        Object info = Proxy.newProxyInstance(ObjectInputFilters.class.getClassLoader(), new Class<?>[] {FILTER_INFO},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "serialClass":
+                        return type;
+                    case "arrayLength":
+                        return -1L;
+                    case "depth":
+                        return depth;
+                    case "references":
+                        return references;
+                    case "streamBytes":
+                        return 0L;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return "FilterInfo[" + type.getName() + "]";
+                }
+            });
+        Object status;
+        try {
+            status = CHECK_INPUT.invoke(filter, info);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            InvalidClassException ice = new InvalidClassException(type.getName(), "filter failed");
+            ice.initCause(e.getCause());
+            throw ice;
+        }
+        if (status == null || "REJECTED".equals(status.toString()))
+            throw new InvalidClassException(type.getName(), "filter status: " + status);
+    }
+
+    private static Object invoke(Method method, ObjectInputStream in, Object... args) {
+        try {
+            if (!Modifier.isStatic(method.getModifiers()))
+                return method.invoke(in, args);
+            Object[] staticArgs = new Object[args.length + 1];
+            staticArgs[0] = in;
+            System.arraycopy(args, 0, staticArgs, 1, args.length);
+            return method.invoke(null, staticArgs);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
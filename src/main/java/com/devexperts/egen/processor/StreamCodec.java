@@ -0,0 +1,127 @@
+package com.devexperts.egen.processor;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generated writeInline/readInline methods of @AutoSerializable class and its default constructor,
+ * looked up once per class and called through method handles by {@link EgenObjectOutputStream}
+ * and {@link EgenObjectInputStream}.
+ */
+final class StreamCodec {
+    private static final StreamCodec NONE = new StreamCodec(null, null, null, null);
+    private static final List<String> SERIALIZATION_HOOKS = Arrays.asList("writeReplace", "readResolve", "readObjectNoData");
+
+    private static final ClassValue<StreamCodec> CODECS = new ClassValue<StreamCodec>() {
+        @Override
+        protected StreamCodec computeValue(Class<?> type) {
+            return find(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final MethodHandle writeInline; // (ObjectOutputStream, Object, boolean) void
+    private final MethodHandle readInline; // (ObjectInputStream, Object) void
+    private final MethodHandle constructor; // () Object
+
+    private StreamCodec(Class<?> type, MethodHandle writeInline, MethodHandle readInline, MethodHandle constructor) {
+        this.type = type;
+        this.writeInline = writeInline;
+        this.readInline = readInline;
+        this.constructor = constructor;
+    }
+
+    /**
+     * @return codec of given class, or null if it has no generated methods or default constructor
+     */
+    static StreamCodec forClass(Class<?> type) {
+        StreamCodec codec = CODECS.get(type);
+        return codec == NONE ? null : codec;
+    }
+
+    Class<?> type() {
+        return type;
+    }
+
+    void write(ObjectOutputStream out, Object self) throws IOException {
+        try {
+            writeInline.invokeExact(out, self, true);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+    Object read(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        try {
+            Object self = constructor.invokeExact();
+            readInline.invokeExact(in, self);
+            return self;
+        } catch (IOException | ClassNotFoundException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+    private static StreamCodec find(Class<?> type) {
+        if (type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers()) || hasSerializationHooks(type))
+            return NONE;
+        try {
+            Class<?> owner = IOUtils.codecClass(type);
+            Method write = owner.getDeclaredMethod("writeInline", ObjectOutputStream.class, type, boolean.class);
+            Method read = owner.getDeclaredMethod("readInline", ObjectInputStream.class, type);
+            if (!Modifier.isStatic(write.getModifiers()) || !Modifier.isStatic(read.getModifiers()))
+                return NONE;
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            write.setAccessible(true);
+            read.setAccessible(true);
+            constructor.setAccessible(true);
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            return new StreamCodec(type,
+                    lookup.unreflect(write).asType(MethodType.methodType(void.class, ObjectOutputStream.class, Object.class, boolean.class)),
+                    lookup.unreflect(read).asType(MethodType.methodType(void.class, ObjectInputStream.class, Object.class)),
+                    lookup.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class)));
+        } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+            return NONE; // not generated by EGEN or not accessible, object stream serialization is used instead
+        }
+    }
+
+    /**
+     * Instances that are replaced or resolved (or need readObjectNoData()) are left to object stream serialization,
+     * since generated methods know nothing about these hooks. Private hooks of superclasses are counted as well.
+     */
+    private static boolean hasSerializationHooks(Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.getParameterCount() == 0 && !Modifier.isStatic(method.getModifiers()) &&
+                        SERIALIZATION_HOOKS.contains(method.getName()))
+                    return true;
+            }
+        }
+        return false;
+    }
+}
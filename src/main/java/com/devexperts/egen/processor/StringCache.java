@@ -0,0 +1,93 @@
+package com.devexperts.egen.processor;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+/**
+ * Bounded cache of decoded strings looked up by their encoded bytes, used for @Canonical fields.<br>
+ * It is split into independently locked stripes, each of them is a direct-mapped table where a new string
+ * just replaces the previous one in its slot. Lookup doesn't allocate, so repeated strings cost no garbage.
+ */
+class StringCache {
+    static final int MAX_LENGTH = 64; // longer strings are rarely repeated and are not cached
+
+    private static final int STRIPE_BITS = 4;
+    private static final int SLOT_BITS = 10;
+    private static final Stripe[] STRIPES = new Stripe[1 << STRIPE_BITS];
+
+    static {
+        for (int i = 0; i < STRIPES.length; i++)
+            STRIPES[i] = new Stripe();
+    }
+
+    private StringCache() {}
+
+    /**
+     * @return cached string with given encoded form (tag distinguishes encodings), or null if there is none
+     */
+    static String get(int tag, byte[] bytes, int offset, int length) {
+        int hash = hash(tag, bytes, offset, length);
+        Stripe stripe = STRIPES[hash & (STRIPES.length - 1)];
+        int slot = (hash >>> STRIPE_BITS) & ((1 << SLOT_BITS) - 1);
+        synchronized (stripe) {
+            Entry entry = stripe.entries[slot];
+            if (entry != null && entry.matches(tag, bytes, offset, length))
+                return entry.string;
+        }
+        return null;
+    }
+
+    static void put(int tag, byte[] bytes, int offset, int length, String string) {
+        int hash = hash(tag, bytes, offset, length);
+        Stripe stripe = STRIPES[hash & (STRIPES.length - 1)];
+        int slot = (hash >>> STRIPE_BITS) & ((1 << SLOT_BITS) - 1);
+        byte[] key = new byte[length];
+        System.arraycopy(bytes, offset, key, 0, length);
+        Entry entry = new Entry(tag, key, string);
+        synchronized (stripe) {
+            stripe.entries[slot] = entry;
+        }
+    }
+
+    private static int hash(int tag, byte[] bytes, int offset, int length) {
+        int hash = tag;
+        for (int i = offset; i < offset + length; i++)
+            hash = 31 * hash + bytes[i];
+        return hash ^ (hash >>> 16);
+    }
+
+    private static class Stripe {
+        final Entry[] entries = new Entry[1 << SLOT_BITS];
+    }
+
+    private static class Entry {
+        final int tag;
+        final byte[] bytes;
+        final String string;
+
+        Entry(int tag, byte[] bytes, String string) {
+            this.tag = tag;
+            this.bytes = bytes;
+            this.string = string;
+        }
+
+        boolean matches(int tag, byte[] bytes, int offset, int length) {
+            if (this.tag != tag || this.bytes.length != length)
+                return false;
+            for (int i = 0; i < length; i++) {
+                if (this.bytes[i] != bytes[offset + i])
+                    return false;
+            }
+            return true;
+        }
+    }
+}
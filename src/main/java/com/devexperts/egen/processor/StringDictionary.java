@@ -0,0 +1,97 @@
+package com.devexperts.egen.processor;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Table of strings already transmitted through a particular stream, used for @Dictionary fields.<br>
+ * Writer and reader keep their tables in sync: each string is written once, next time only its index is written.
+ * Tables are attached to stream instances and are dropped together with them.
+ */
+class StringDictionary {
+    static final int MAX_SIZE = 65536; // strings beyond the limit are written as is
+
+    private static final Map<Object, StringDictionary> DICTIONARIES = new WeakHashMap<>();
+    // weak, so that the thread does not retain strings of a dropped stream
+    private static final ThreadLocal<WeakReference<StringDictionary>> LAST_USED = new ThreadLocal<>();
+
+    private final WeakReference<Object> stream;
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final ArrayList<String> strings = new ArrayList<>();
+
+    private StringDictionary(Object stream) {
+        this.stream = new WeakReference<>(stream);
+    }
+
+    /**
+     * Writes -1 for null, index + 1 for known string, or 0 followed by the string itself.
+     */
+    void write(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            IOUtils.writeCompactInt(out, -1);
+            return;
+        }
+
+        Integer index = indices.get(s);
+        if (index != null) {
+            IOUtils.writeCompactInt(out, index + 1);
+            return;
+        }
+
+        IOUtils.writeCompactInt(out, 0);
+        IOUtils.writeUTFString(out, s);
+        if (indices.size() < MAX_SIZE)
+            indices.put(s, indices.size());
+    }
+
+    String read(DataInput in) throws IOException {
+        int code = IOUtils.readCompactInt(in);
+        if (code == -1)
+            return null;
+        if (code > 0) {
+            if (code > strings.size())
+                throw new IOException("Unknown dictionary string index " + (code - 1));
+            return strings.get(code - 1);
+        }
+
+        String s = IOUtils.readUTFString(in);
+        if (strings.size() < MAX_SIZE)
+            strings.add(s);
+        return s;
+    }
+
+    static StringDictionary forStream(Object stream) {
+        WeakReference<StringDictionary> lastUsed = LAST_USED.get();
+        StringDictionary dictionary = lastUsed == null ? null : lastUsed.get();
+        if (dictionary != null && dictionary.stream.get() == stream)
+            return dictionary;
+
+        synchronized (DICTIONARIES) {
+            dictionary = DICTIONARIES.get(stream);
+            if (dictionary == null) {
+                dictionary = new StringDictionary(stream);
+                DICTIONARIES.put(stream, dictionary);
+            }
+        }
+        LAST_USED.set(new WeakReference<>(dictionary));
+        return dictionary;
+    }
+}
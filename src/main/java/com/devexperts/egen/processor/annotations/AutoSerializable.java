@@ -23,7 +23,31 @@ import java.lang.annotation.Target;
  * It will contain lines for serialization/deserialization of all non-static and non-transient fields.
  */
 @Target({ElementType.TYPE})
-@Retention(RetentionPolicy.SOURCE)
+@Retention(RetentionPolicy.CLASS)
 public @interface AutoSerializable {
+    /**
+     * If true, every field without @PresenceBit gets its own presence bit against type default (0, false or null)
+     * and is transmitted only when it has another value. Fields packed into bit field words are not affected.
+     */
+    boolean sparse() default false;
 
+    /**
+     * If true, writeObject()/readObject() transmit fields of the whole @AutoSerializable hierarchy at once
+     * (like @Inline does), instead of a separate block of data for each class. Superclasses skip their part.
+     */
+    boolean flatten() default false;
+
+    /**
+     * If true, the class implements Externalizable with writeExternal()/readExternal() transmitting fields of the whole
+     * @AutoSerializable hierarchy, and its no-arg constructor is made public (or added). Allowed for final classes only.
+     * The generated methods work with ObjectOutputStream/ObjectInputStream only and throw IOException
+     * when called with another ObjectOutput/ObjectInput implementation.
+     */
+    boolean externalizable() default false;
+
+    /**
+     * Non-abstract @AutoSerializable subclasses that @Inline fields of this type may hold. Marker of a subclass
+     * in serialized form is its position in this list, so new subclasses shall be appended to its end.
+     */
+    Class<?>[] subclasses() default {};
 }
@@ -22,6 +22,7 @@ import java.lang.annotation.Target;
  * You can mark other annotation (e. g. @Annotation) with this annotation, and later mark fields with @Annotation.<br>
  * For their serialization the following code will be generated:<br>
  * com.devexperts.io.IOUtil.write&lt;targetStrategy&gt;(out, &lt;toTarget&gt;(field));<br>
+ * CompactInt, CompactLong and UTFString strategies are taken from EGEN's own IOUtils instead (unless -Aruntime=dxlib).<br>
  * &lt;fromTarget&gt; will be used thereafter during deserialization.
  */
 @Retention(RetentionPolicy.RUNTIME)
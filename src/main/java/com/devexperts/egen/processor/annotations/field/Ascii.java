@@ -0,0 +1,29 @@
+package com.devexperts.egen.processor.annotations.field;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark string field with this annotation to transmit it as length and one byte per char (Latin-1),
+ * that is cheaper to encode and decode than UTF-8 for symbols and codes.<br>
+ * Strings with other chars are still transmitted correctly with one byte overhead.<br>
+ * Annotation can be combined with @Compact, @PresenceBit and @Canonical, and applies to container elements.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Ascii {
+}
@@ -0,0 +1,29 @@
+package com.devexperts.egen.processor.annotations.field;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark string field with this annotation to look decoded strings up in a bounded shared cache,
+ * so that equal values read from different messages are the same instance and repeated ones don't allocate.<br>
+ * Strings are transmitted as with @Compact; annotation can be combined with it and applies to container elements.<br>
+ * Option -Acanonicalize=true turns it on for all strings written by @Compact.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Canonical {
+}
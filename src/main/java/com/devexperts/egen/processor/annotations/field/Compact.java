@@ -19,7 +19,7 @@ import java.lang.annotation.Target;
 
 /**
  * Mark field with this annotation to make its serialized form more compact.<br>
- * For primitive types (including boxed) and strings appropriate method from dxlib's IOUtil will be used.<br>
+ * For primitive types (including boxed) and strings appropriate method from EGEN's IOUtils will be used.<br>
  * For arrays, collections and maps: their content will be serialized without their own identity.
  * Field must be non-abstract: you can't write @Compact java.util.Map&lt;K, V&gt; m;<br>
  * For other @AutoSerializable classes @Compact is just equal to @Inline.<br>
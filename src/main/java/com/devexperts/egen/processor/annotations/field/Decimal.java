@@ -0,0 +1,36 @@
+package com.devexperts.egen.processor.annotations.field;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark double/float field (including boxed) with this annotation to transmit it as decimal mantissa and scale
+ * packed into compact long: e.g. 123.45 costs 3 bytes instead of 8.<br>
+ * Values without short decimal representation (NaN, infinities, -0.0, results of arithmetic) are transmitted as is
+ * with one byte overhead.<br>
+ * Example: @Decimal(precision = 4) double price; — price will be rounded to 4 decimal digits during serialization.<br>
+ * It can be combined with @PresenceBit, and also applies to elements of arrays, collections and maps
+ * (which are then compacted as with @Compact).
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Decimal {
+    /**
+     * Number of decimal digits (0..14) to round value to; -1 means that value is transmitted exactly.
+     */
+    int precision() default -1;
+}
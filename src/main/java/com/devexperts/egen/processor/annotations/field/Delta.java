@@ -18,11 +18,14 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * Mark integer/long field with this annotation to use delta-encoding during serialization.<br>
- * You can do @Delta("42") to transmit difference to 42 or @Delta("b") to transmit difference to integer/long field b.<br>
+ * Mark int/long/double field or array with this annotation to use delta-encoding during serialization.<br>
+ * Doubles are transmitted as differences of decimal mantissas (see @Decimal).<br>
+ * You can do @Delta("42") to transmit difference to 42 or @Delta("b") to transmit difference to field b of the same type.<br>
+ * For int[]/long[] @Delta(order = 2) transmits differences between adjacent deltas, e.g. for evenly spaced timestamps.
  */
 @Target(ElementType.FIELD)
 @Retention(RetentionPolicy.SOURCE)
 public @interface Delta {
     String value() default "";
+    int order() default 1;
 }
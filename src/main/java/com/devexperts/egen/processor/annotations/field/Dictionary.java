@@ -0,0 +1,30 @@
+package com.devexperts.egen.processor.annotations.field;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark string field with this annotation to transmit it through a dictionary attached to the object stream:
+ * each distinct string is written once, later occurrences cost a compact index.<br>
+ * Suitable for fields with small set of values (symbols, exchange codes) sent many times through one stream.
+ * Writer and reader shall use one stream for the whole session, data can't be read by a fresh stream
+ * from the middle. Fields with this annotation can't be written to ByteBuffer.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Dictionary {
+}
@@ -20,6 +20,7 @@ import java.lang.annotation.Target;
 /**
  * Mark custom enumerable field with this annotation to transmit only its ordinal number during serialization.<br>
  * Custom enumerable = have methods .code() and .findByCode(Class, int)<br>
+ * Java enums are written as .ordinal() and read from cached .values() array.<br>
  */
 @Target(ElementType.FIELD)
 @Retention(RetentionPolicy.SOURCE)
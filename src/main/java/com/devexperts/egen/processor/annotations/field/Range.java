@@ -0,0 +1,35 @@
+package com.devexperts.egen.processor.annotations.field;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark primitive integer field (byte, short, char, int or long) with this annotation to pack it into a shared
+ * bit field word together with booleans and @Ordinal enums: value is written as (value - min) in as many bits
+ * as max - min requires.<br>
+ * Example: @Range(min = 0, max = 9) int level; — level costs 4 bits.<br>
+ * Writing a value out of range throws IllegalArgumentException. Fields with @PresenceBit are not packed.<br>
+ * On @Ordinal enum field max reserves ordinals 0..max (min must be 0), otherwise enum width follows its number
+ * of constants and changes serialized form of all following packed fields when constants are added.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Range {
+    long min() default 0;
+
+    long max();
+}
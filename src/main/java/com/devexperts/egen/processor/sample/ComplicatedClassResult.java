@@ -173,11 +173,11 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         long flags = prepareFlags();
 
-        com.devexperts.io.IOUtil.writeCompactLong(out, flags);
+        com.devexperts.egen.processor.IOUtils.writeCompactLong(out, flags);
 
         if ((flags & 1L << 0) != 0) {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, maturity);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, maturity);
 
             out.writeDouble(strikePrice);
 
@@ -193,25 +193,25 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         if ((flags & 1L << 2) != 0) {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, hitCount);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, hitCount);
 
         }
 
-        com.devexperts.io.IOUtil.writeCompactInt(out, smallInt);
+        com.devexperts.egen.processor.IOUtils.writeCompactInt(out, smallInt);
 
         if (smallInts != null) {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, smallInts.length);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, smallInts.length);
 
             for (int smallIntselem : smallInts) {
 
-                com.devexperts.io.IOUtil.writeCompactInt(out, smallIntselem);
+                com.devexperts.egen.processor.IOUtils.writeCompactInt(out, smallIntselem);
 
             }
 
         } else {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
         }
 
@@ -225,7 +225,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         out.writeObject(appendableList);
 
-        if (a != null) com.devexperts.io.IOUtil.writeCompactInt(out, a.code()); else com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+        if (a != null) com.devexperts.egen.processor.IOUtils.writeCompactInt(out, a.code()); else com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
         out.writeObject(test2);
 
@@ -239,7 +239,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         if (map1 != null) {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, map1.size());
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, map1.size());
 
             for (java.util.Map.Entry<ComplicatedClassResult, HashMap<ArrayList<Double>, Enumerable>> map1entry : map1.entrySet()) {
 
@@ -257,7 +257,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
                 if (map1value != null) {
 
-                    com.devexperts.io.IOUtil.writeCompactInt(out, map1value.size());
+                    com.devexperts.egen.processor.IOUtils.writeCompactInt(out, map1value.size());
 
                     for (java.util.Map.Entry<ArrayList<Double>, Enumerable> map1valueentry : map1value.entrySet()) {
 
@@ -267,7 +267,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
                         if (map1valuekey != null) {
 
-                            com.devexperts.io.IOUtil.writeCompactInt(out, map1valuekey.size());
+                            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, map1valuekey.size());
 
                             for (Double map1valuekeyelem : map1valuekey) {
 
@@ -277,7 +277,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
                         } else {
 
-                            com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+                            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
                         }
 
@@ -287,7 +287,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
                 } else {
 
-                    com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+                    com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
                 }
 
@@ -295,35 +295,35 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         } else {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
         }
 
         if (list1 != null) {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, list1.size());
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, list1.size());
 
             for (LinkedList<int[]> list1elem : list1) {
 
                 if (list1elem != null) {
 
-                    com.devexperts.io.IOUtil.writeCompactInt(out, list1elem.size());
+                    com.devexperts.egen.processor.IOUtils.writeCompactInt(out, list1elem.size());
 
                     for (int[] list1elemelem : list1elem) {
 
                         if (list1elemelem != null) {
 
-                            com.devexperts.io.IOUtil.writeCompactInt(out, list1elemelem.length);
+                            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, list1elemelem.length);
 
                             for (int list1elemelemelem : list1elemelem) {
 
-                                com.devexperts.io.IOUtil.writeCompactInt(out, list1elemelemelem);
+                                com.devexperts.egen.processor.IOUtils.writeCompactInt(out, list1elemelemelem);
 
                             }
 
                         } else {
 
-                            com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+                            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
                         }
 
@@ -331,7 +331,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
                 } else {
 
-                    com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+                    com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
                 }
 
@@ -339,13 +339,13 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         } else {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
         }
 
         if (objarr != null) {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, objarr.length);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, objarr.length);
 
             for (Object objarrelem : objarr) {
 
@@ -355,13 +355,13 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         } else {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
         }
 
         if (ComplicatedClassResultes != null) {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, ComplicatedClassResultes.length);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, ComplicatedClassResultes.length);
 
             for (ComplicatedClassResult ComplicatedClassResulteselem : ComplicatedClassResultes) {
 
@@ -377,13 +377,13 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         } else {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
         }
 
         if (objectList != null) {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, objectList.size());
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, objectList.size());
 
             for (Object objectListelem : objectList) {
 
@@ -393,13 +393,13 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         } else {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
         }
 
         if (objectToRunnableMap != null) {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, objectToRunnableMap.size());
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, objectToRunnableMap.size());
 
             for (java.util.Map.Entry<Object, Runnable> objectToRunnableMapentry : objectToRunnableMap.entrySet()) {
 
@@ -415,13 +415,13 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         } else {
 
-            com.devexperts.io.IOUtil.writeCompactInt(out, -1);
+            com.devexperts.egen.processor.IOUtils.writeCompactInt(out, -1);
 
         }
 
-        com.devexperts.io.IOUtil.writeCompactInt(out, Integer.parseInt(htya));
+        com.devexperts.egen.processor.IOUtils.writeCompactInt(out, Integer.parseInt(htya));
 
-        com.devexperts.io.IOUtil.writeUTFString(out, s);
+        com.devexperts.egen.processor.IOUtils.writeUTFString(out, s);
 
     }
 
@@ -447,11 +447,11 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
     public void readContents(java.io.ObjectInputStream in) throws java.io.IOException, java.lang.ClassNotFoundException {
 
-        long flags = com.devexperts.io.IOUtil.readCompactLong(in);
+        long flags = com.devexperts.egen.processor.IOUtils.readCompactLong(in);
 
         if ((flags & 1L << 0) != 0) {
 
-            maturity = com.devexperts.io.IOUtil.readCompactInt(in);
+            maturity = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
             strikePrice = in.readDouble();
 
@@ -479,7 +479,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         if ((flags & 1L << 2) != 0) {
 
-            hitCount = com.devexperts.io.IOUtil.readCompactInt(in);
+            hitCount = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
         } else {
 
@@ -487,11 +487,11 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         }
 
-        smallInt = com.devexperts.io.IOUtil.readCompactInt(in);
+        smallInt = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
         {
 
-            int smallIntssize = com.devexperts.io.IOUtil.readCompactInt(in);
+            int smallIntssize = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
             if (smallIntssize != -1) {
 
@@ -501,7 +501,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
                     int smallIntselem;
 
-                    smallIntselem = com.devexperts.io.IOUtil.readCompactInt(in);
+                    smallIntselem = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
                     smallInts[smallIntsindex] = smallIntselem;
 
@@ -523,9 +523,9 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         {
 
-            int aord = com.devexperts.io.IOUtil.readCompactInt(in);
+            int aord = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
-            if (aord != -1) a = Enumerable.findByCode(Enumerable.class, aord);
+            if (aord != -1) a = Enumerable.findByCode(Enumerable.class, aord); else a = null;
 
         }
 
@@ -541,7 +541,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         {
 
-            int map1size = com.devexperts.io.IOUtil.readCompactInt(in);
+            int map1size = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
             if (map1size != -1) {
 
@@ -563,7 +563,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
                     {
 
-                        int map1valuesize = com.devexperts.io.IOUtil.readCompactInt(in);
+                        int map1valuesize = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
                         if (map1valuesize != -1) {
 
@@ -575,7 +575,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
                                 {
 
-                                    int map1valuekeysize = com.devexperts.io.IOUtil.readCompactInt(in);
+                                    int map1valuekeysize = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
                                     if (map1valuekeysize != -1) {
 
@@ -617,7 +617,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         {
 
-            int list1size = com.devexperts.io.IOUtil.readCompactInt(in);
+            int list1size = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
             if (list1size != -1) {
 
@@ -629,7 +629,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
                     {
 
-                        int list1elemsize = com.devexperts.io.IOUtil.readCompactInt(in);
+                        int list1elemsize = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
                         if (list1elemsize != -1) {
 
@@ -641,7 +641,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
                                 {
 
-                                    int list1elemelemsize = com.devexperts.io.IOUtil.readCompactInt(in);
+                                    int list1elemelemsize = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
                                     if (list1elemelemsize != -1) {
 
@@ -651,7 +651,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
                                             int list1elemelemelem;
 
-                                            list1elemelemelem = com.devexperts.io.IOUtil.readCompactInt(in);
+                                            list1elemelemelem = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
                                             list1elemelem[list1elemelemindex] = list1elemelemelem;
 
@@ -679,7 +679,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         {
 
-            int objarrsize = com.devexperts.io.IOUtil.readCompactInt(in);
+            int objarrsize = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
             if (objarrsize != -1) {
 
@@ -701,7 +701,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         {
 
-            int ComplicatedClassResultessize = com.devexperts.io.IOUtil.readCompactInt(in);
+            int ComplicatedClassResultessize = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
             if (ComplicatedClassResultessize != -1) {
 
@@ -729,7 +729,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         {
 
-            int objectListsize = com.devexperts.io.IOUtil.readCompactInt(in);
+            int objectListsize = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
             if (objectListsize != -1) {
 
@@ -751,7 +751,7 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         {
 
-            int objectToRunnableMapsize = com.devexperts.io.IOUtil.readCompactInt(in);
+            int objectToRunnableMapsize = com.devexperts.egen.processor.IOUtils.readCompactInt(in);
 
             if (objectToRunnableMapsize != -1) {
 
@@ -775,9 +775,9 @@ public class ComplicatedClassResult implements ActionListener, java.io.Serializa
 
         }
 
-        htya = Integer.toString(com.devexperts.io.IOUtil.readCompactInt(in));
+        htya = Integer.toString(com.devexperts.egen.processor.IOUtils.readCompactInt(in));
 
-        s = com.devexperts.io.IOUtil.readUTFString(in);
+        s = com.devexperts.egen.processor.IOUtils.readUTFString(in);
 
     }
 
@@ -0,0 +1,152 @@
+package com.devexperts.egen.processor.tools;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import com.devexperts.egen.processor.AutoSerializableProcessor;
+import com.sun.tools.javac.code.Attribute;
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.Pair;
+
+import javax.lang.model.element.ElementKind;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs booleans, @Ordinal enums and @Range integers declared outside of presence groups into long words,
+ * which are written as compact longs right after presence flags. Fields are laid out in declaration order
+ * starting from the lowest bit, a field that doesn't fit into the current word starts a new one.
+ */
+public class BitFieldPacker {
+    public static final int WORD_BITS = 64;
+    public static final String RANGE = "Range";
+
+    JCTree.JCClassDecl classDecl;
+
+    public BitFieldPacker(JCTree.JCClassDecl classDecl) {
+        this.classDecl = classDecl;
+    }
+
+    public List<List<JCTree.JCVariableDecl>> getWords() {
+        List<List<JCTree.JCVariableDecl>> result = new ArrayList<>();
+        List<JCTree.JCVariableDecl> word = null;
+        int offset = WORD_BITS;
+
+        for (JCTree tree : classDecl.defs) {
+            if (tree instanceof JCTree.JCVariableDecl) {
+                JCTree.JCVariableDecl var = (JCTree.JCVariableDecl) tree;
+                int width = bitWidth(var);
+                if (width == 0)
+                    continue;
+
+                if (offset + width > WORD_BITS) {
+                    word = new ArrayList<>();
+                    result.add(word);
+                    offset = 0;
+                }
+                word.add(var);
+                offset += width;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return number of bits the field takes in a word, or 0 if the field isn't packed
+     */
+    public static int bitWidth(JCTree.JCVariableDecl var) {
+        if ((var.mods.flags & (Flags.TRANSIENT | Flags.STATIC)) != 0)
+            return 0;
+
+        String annotationType = AutoSerializableProcessor.getEgenAnnotationType(var);
+        String typeName = var.vartype.toString();
+
+        if ("Ordinal".equals(annotationType) && StatementFactory.isEnumApplicable(var)) {
+            int constants = 0;
+            for (Symbol member : var.vartype.type.tsym.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.ENUM_CONSTANT)
+                    constants++;
+            }
+            JCTree.JCAnnotation range = AutoSerializableProcessor.getEgenAnnotation(var, RANGE);
+            if (range == null)
+                return unsignedWidth(constants); // 0 is reserved for null
+            // @Range(max) reserves ordinals up to max, so that width doesn't change when constants are added
+            long max = rangeBound(range, "max");
+            if (rangeBound(range, "min") != 0 || max < constants - 1 || max >= Integer.MAX_VALUE)
+                throw new InvalidDeclarationException("@Range of @Ordinal enum field " + var.name +
+                        " shall have min = 0 and max not less than the last ordinal " + (constants - 1), var.sym);
+            return unsignedWidth(max + 1);
+        }
+
+        if (!annotationType.isEmpty() && !"Compact".equals(annotationType))
+            return 0;
+
+        if ("boolean".equals(typeName))
+            return StatementFactory.SerializationStrategyRecord.getByVariable(var) == null ? 1 : 0;
+
+        JCTree.JCAnnotation range = AutoSerializableProcessor.getEgenAnnotation(var, RANGE);
+        if (range != null && isRangeType(typeName)) {
+            long min = rangeBound(range, "min");
+            long max = rangeBound(range, "max");
+            if (max < min)
+                throw new InvalidDeclarationException("Empty @Range of field " + var.name, var.sym);
+            return Math.max(1, unsignedWidth(max - min));
+        }
+
+        return 0;
+    }
+
+    static long rangeBound(JCTree.JCAnnotation range, String argumentName) {
+        // bounds are taken from attributed annotation when available, so that constants like Long.MAX_VALUE work
+        if (range.attribute != null) {
+            for (Pair<Symbol.MethodSymbol, Attribute> pair : range.attribute.values) {
+                if (pair.fst.name.contentEquals(argumentName) && pair.snd instanceof Attribute.Constant)
+                    return ((Number) ((Attribute.Constant) pair.snd).value).longValue();
+            }
+        }
+
+        String value = AutoSerializableProcessor.getAnnotationValue(range, argumentName);
+        if (value == null)
+            return 0;
+        if (value.endsWith("L") || value.endsWith("l"))
+            value = value.substring(0, value.length() - 1);
+        try {
+            return Long.decode(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidDeclarationException("@Range bounds must be integer literals, found " + value, null);
+        }
+    }
+
+    static long wordMask(int width) {
+        return width == WORD_BITS ? -1L : (1L << width) - 1;
+    }
+
+    private static int unsignedWidth(long value) {
+        return WORD_BITS - Long.numberOfLeadingZeros(value);
+    }
+
+    private static boolean isRangeType(String typeName) {
+        switch (typeName) {
+            case "byte":
+            case "short":
+            case "char":
+            case "int":
+            case "long":
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -27,6 +27,7 @@ public class FieldGrouper {
     private static final int ERROR = -2;
     private static final int SINGLETON_GROUP = -1;
     private static final String VALUE = "value";
+    private static final String SPARSE = "sparse";
 
     JCTree.JCClassDecl classDecl;
 
@@ -81,6 +82,32 @@ public class FieldGrouper {
             }
         }
 
+        if (isSparse()) {
+            for (JCTree tree : classDecl.defs) {
+                if (tree instanceof JCTree.JCVariableDecl && isSparseField((JCTree.JCVariableDecl) tree)) {
+                    List<JCTree.JCVariableDecl> varList = new ArrayList<>();
+                    varList.add((JCTree.JCVariableDecl) tree);
+                    result.add(varList);
+                }
+            }
+        }
+
         return result;
     }
+
+    /**
+     * @return true if the class is marked with @AutoSerializable(sparse = true)
+     */
+    public boolean isSparse() {
+        return AutoSerializableProcessor.isClassOptionEnabled(classDecl, SPARSE);
+    }
+
+    /**
+     * @return true if the field is not annotated with @PresenceBit and gets a presence bit in sparse mode
+     */
+    public static boolean isSparseField(JCTree.JCVariableDecl var) {
+        return (var.mods.flags & (Flags.TRANSIENT | Flags.STATIC)) == 0 &&
+                !PRESENCE.equals(AutoSerializableProcessor.getEgenAnnotationType(var)) &&
+                BitFieldPacker.bitWidth(var) == 0;
+    }
 }
@@ -13,6 +13,7 @@ package com.devexperts.egen.processor.tools;
  */
 
 import com.devexperts.egen.processor.AutoSerializableProcessor;
+import com.sun.tools.javac.code.TypeTag;
 import com.sun.tools.javac.model.JavacElements;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeMaker;
@@ -28,12 +29,24 @@ public class GroupStatementFactory {
     int groupOrdinal;
     TreeMaker maker;
     JavacElements utils;
+    boolean bufferMode;
+    boolean wideFlags; // "flags" is long[] instead of long
 
     public GroupStatementFactory(java.util.List<JCTree.JCVariableDecl> fieldGroup, int groupOrdinal, TreeMaker maker, JavacElements utils) {
+        this(fieldGroup, groupOrdinal, maker, utils, false);
+    }
+
+    public GroupStatementFactory(java.util.List<JCTree.JCVariableDecl> fieldGroup, int groupOrdinal, TreeMaker maker, JavacElements utils, boolean bufferMode) {
+        this(fieldGroup, groupOrdinal, maker, utils, bufferMode, false);
+    }
+
+    public GroupStatementFactory(java.util.List<JCTree.JCVariableDecl> fieldGroup, int groupOrdinal, TreeMaker maker, JavacElements utils, boolean bufferMode, boolean wideFlags) {
         this.fieldGroup = fieldGroup;
         this.groupOrdinal = groupOrdinal;
         this.maker = maker;
         this.utils = utils;
+        this.bufferMode = bufferMode;
+        this.wideFlags = wideFlags;
     }
 
     public JCStatement groupFlagsStatement() {
@@ -63,13 +76,17 @@ public class GroupStatementFactory {
                 Tag.NE,
                 maker.Parens(maker.Binary(
                         Tag.BITAND,
-                        ident("flags"),
-                        maker.Binary(JCTree.Tag.SL, maker.Literal(1L), maker.Literal(groupOrdinal))
+                        flagsWord(groupOrdinal),
+                        maker.Binary(JCTree.Tag.SL, maker.Literal(1L), maker.Literal(groupOrdinal % Long.SIZE))
                 )),
                 maker.Literal(0)
         );
     }
 
+    private JCExpression flagsWord(int groupOrdinal) {
+        return wideFlags ? maker.Indexed(ident("flags"), maker.Literal(groupOrdinal / Long.SIZE)) : ident("flags");
+    }
+
     private List<JCStatement> writeStatements(java.util.List<JCTree.JCVariableDecl> vars) {
         List<JCStatement> result = List.nil();
         for (JCVariableDecl var : vars) {
@@ -79,7 +96,8 @@ public class GroupStatementFactory {
 //            expression = maker.Select(expression, utils.getName("write" + typeIdentString));
 //            expression = maker.Apply(List.<JCExpression>nil(), expression,
 //                    List.of((JCExpression) ident(variableDecl.name.toString())));
-            result = result.append(new StatementFactory(maker, utils, var).compactWriteStatement());
+            StatementFactory statementFactory = new StatementFactory(maker, utils, var, false, bufferMode);
+            result = result.append(isPresenceField(var) ? statementFactory.compactWriteStatement() : statementFactory.writeStatement());
         }
         return result;
     }
@@ -103,7 +121,8 @@ public class GroupStatementFactory {
 //            expression = maker.Select(expression, utils.getName("read" + typeIdentString));
 //            expression = maker.Apply(List.<JCExpression>nil(), expression, List.<JCExpression>nil());
 //            expression = maker.Assign(ident(variableDecl.name.toString()), expression);
-            result = result.append(new StatementFactory(maker, utils, var).compactReadStatement());
+            StatementFactory statementFactory = new StatementFactory(maker, utils, var, false, bufferMode);
+            result = result.append(isPresenceField(var) ? statementFactory.compactReadStatement() : statementFactory.readStatement());
         }
         return result;
     }
@@ -113,6 +132,12 @@ public class GroupStatementFactory {
         int size = vars.size();
         String varName = var.name.toString();
         if (vars.size() == 1) {
+            if (!isPresenceField(var) && isFloatingPoint(var)) {
+                // compare bits so that -0.0 isn't taken for default
+                String bitsMethod = "float".equals(var.vartype.toString()) ? "Float.floatToRawIntBits" : "Double.doubleToRawLongBits";
+                JCExpression bits = maker.Apply(List.<JCExpression>nil(), ident(bitsMethod), List.of(ident("self." + varName)));
+                return maker.Binary(Tag.NE, bits, maker.Literal(0));
+            }
             return maker.Binary(Tag.NE, ident("self." + varName), varDefaultValue(var));
         } else {
             return maker.Binary(Tag.OR, groupDefaultCheckCond(vars.subList(0, size - 1)),
@@ -121,11 +146,42 @@ public class GroupStatementFactory {
     }
 
     private JCExpression flagAssignExpr(int groupOrdinal) {
-        return maker.Assignop(Tag.BITOR_ASG, ident("flags"),
-                maker.Binary(Tag.SL, maker.Literal(1L), maker.Literal(groupOrdinal)));
+        return maker.Assignop(Tag.BITOR_ASG, flagsWord(groupOrdinal),
+                maker.Binary(Tag.SL, maker.Literal(1L), maker.Literal(groupOrdinal % Long.SIZE)));
+    }
+
+    /**
+     * @return true if the field is annotated with @PresenceBit, otherwise it's tracked against its type default in sparse mode
+     */
+    private static boolean isPresenceField(JCVariableDecl var) {
+        return FieldGrouper.PRESENCE.equals(AutoSerializableProcessor.getEgenAnnotationType(var));
+    }
+
+    private static boolean isFloatingPoint(JCVariableDecl var) {
+        return "float".equals(var.vartype.toString()) || "double".equals(var.vartype.toString());
+    }
+
+    private JCExpression typeDefaultValue(JCVariableDecl var) {
+        switch (var.vartype.toString()) {
+            case "boolean":
+                return maker.Literal(false);
+            case "byte":
+            case "short":
+            case "char":
+            case "int":
+            case "long":
+            case "float":
+            case "double":
+                return maker.TypeCast(maker.Type(var.vartype.type), maker.Literal(0));
+            default:
+                return maker.Literal(TypeTag.BOT, null);
+        }
     }
 
     private JCExpression varDefaultValue(JCVariableDecl var) {
+        if (!isPresenceField(var))
+            return typeDefaultValue(var);
+
         String typeIdentString = Character.toUpperCase(var.vartype.toString().charAt(0)) + var.vartype.toString().substring(1);
         if ("Int".equals(typeIdentString)) {
             typeIdentString = "Integer";
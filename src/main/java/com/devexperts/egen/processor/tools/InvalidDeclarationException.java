@@ -0,0 +1,45 @@
+package com.devexperts.egen.processor.tools;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+
+/**
+ * EGEN annotations of a class or its fields can't be applied. The processor reports it as a compilation error
+ * on the given element (or on the class being processed) and goes on with other classes.
+ */
+public class InvalidDeclarationException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final Element element;
+    private final AnnotationMirror annotation;
+
+    public InvalidDeclarationException(String message, Element element) {
+        this(message, element, null);
+    }
+
+    public InvalidDeclarationException(String message, Element element, AnnotationMirror annotation) {
+        super(message);
+        this.element = element;
+        this.annotation = annotation;
+    }
+
+    public Element getElement() {
+        return element;
+    }
+
+    public AnnotationMirror getAnnotation() {
+        return annotation;
+    }
+}
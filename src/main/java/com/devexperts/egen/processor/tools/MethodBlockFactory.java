@@ -13,7 +13,9 @@ package com.devexperts.egen.processor.tools;
  */
 
 import com.devexperts.egen.processor.AutoSerializableProcessor;
+import com.devexperts.egen.processor.IOUtils;
 import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.TypeTag;
 import com.sun.tools.javac.model.JavacElements;
 import com.sun.tools.javac.tree.JCTree;
@@ -23,10 +25,24 @@ import com.sun.tools.javac.util.List;
 import static com.sun.tools.javac.tree.JCTree.*;
 
 public class MethodBlockFactory {
+    public static final String FLATTEN = "flatten";
+
     TreeMaker maker;
     JavacElements utils;
     JCClassDecl classDecl;
 
+    // reasons why classes of the compilation have no ByteBuffer codec, null value means they have it
+    private static final java.util.Map<Symbol.ClassSymbol, String> bufferCodecProblems = new java.util.HashMap<>();
+
+    // field plan of the class, computed once and shared by all generated methods
+    private java.util.List<java.util.List<JCVariableDecl>> fieldGroups;
+    private java.util.Set<JCVariableDecl> groupedFields;
+    private java.util.List<java.util.List<JCVariableDecl>> bitWords;
+
+    // ByteBuffer statements built while checking the class, so writeTo()/readFrom() don't build them again
+    private List<JCStatement> bufferWriteStatements;
+    private List<JCStatement> bufferReadStatements;
+
     public MethodBlockFactory(TreeMaker maker, JavacElements utils, JCClassDecl classDecl) {
         this.maker = maker;
         this.utils = utils;
@@ -34,96 +50,336 @@ public class MethodBlockFactory {
     }
 
     public JCBlock writeContentsBlock() {
+        return maker.Block(0, writeStatements(false));
+    }
+
+    public JCBlock readContentsBlock() {
+        return maker.Block(0, readStatements(false));
+    }
+
+    /**
+     * Unlike writeContents() it writes the whole hierarchy since there is no serialization machinery to call superclasses.
+     * Shall be called only if {@link #bufferCodecProblem()} is null.
+     */
+    public JCBlock writeToBlock() {
+        List<JCStatement> statements = bufferWriteStatements != null ? bufferWriteStatements : writeStatements(true);
+
+        if (classDecl.extending != null) {
+            JCExpression superMethodName = superCodecMethod("writeTo");
+            JCExpression superWriteCall = maker.Apply(List.<JCExpression>nil(), superMethodName,
+                    List.of(ident("out"), (JCExpression) ident("self")));
+            statements = statements.append(maker.Exec(superWriteCall));
+        }
+
+        return maker.Block(0, statements);
+    }
+
+    public JCBlock readFromBlock() {
+        List<JCStatement> statements = bufferReadStatements != null ? bufferReadStatements : readStatements(true);
+
+        if (classDecl.extending != null) {
+            JCExpression superMethodName = superCodecMethod("readFrom");
+            JCExpression superReadCall = maker.Apply(List.<JCExpression>nil(), superMethodName,
+                    List.of(ident("in"), (JCExpression) ident("self")));
+            statements = statements.append(maker.Exec(superReadCall));
+        }
+
+        return maker.Block(0, statements);
+    }
+
+    /**
+     * ByteBuffer codec is generated only if all fields of the hierarchy (including inlined classes) can be encoded
+     * without an object stream, so that writeTo()/readFrom() never fail for a reason known at compile time.
+     * @return reason why the class gets no writeTo()/readFrom() methods, or null if it gets them
+     */
+    public String bufferCodecProblem() {
+        Symbol.ClassSymbol type = classDecl.sym;
+        if (!bufferCodecProblems.containsKey(type)) {
+            bufferCodecProblems.put(type, null); // recursive @Inline references resolve to the class itself
+            bufferCodecProblems.put(type, findBufferCodecProblem());
+        }
+        return bufferCodecProblems.get(type);
+    }
+
+    /**
+     * Classes from class files and from previous rounds have their methods already, so they are checked for writeTo().
+     * @return reason why the class has no writeTo()/readFrom() methods, or null if it has them
+     */
+    public static String bufferCodecProblem(TreeMaker maker, JavacElements utils, Symbol.ClassSymbol type) {
+        if (bufferCodecProblems.containsKey(type))
+            return bufferCodecProblems.get(type);
+
+        JCTree tree = utils.getTree(type);
+        if (!(tree instanceof JCClassDecl) || AutoSerializableProcessor.getAutoSerializable(type) == null) {
+            String problem = hasCompiledBufferCodec(utils, type) ? null : type + " has no ByteBuffer codec";
+            bufferCodecProblems.put(type, problem);
+            return problem;
+        }
+
+        // class of the current round which is not processed yet, its lookup tables don't belong to the current class
+        java.util.Map<String, JCVariableDecl> staticFields = AutoSerializableProcessor.saveStaticFields();
+        try {
+            return new MethodBlockFactory(maker, utils, (JCClassDecl) tree).bufferCodecProblem();
+        } finally {
+            AutoSerializableProcessor.restoreStaticFields(staticFields);
+        }
+    }
+
+    /**
+     * Shall be called for every compilation, as symbols don't survive it.
+     */
+    public static void clearBufferCodecProblems() {
+        bufferCodecProblems.clear();
+    }
+
+    private String findBufferCodecProblem() {
+        try {
+            bufferWriteStatements = writeStatements(true);
+            bufferReadStatements = readStatements(true);
+        } catch (UnsupportedOperationException e) {
+            return e.getMessage();
+        }
+        if (classDecl.extending != null) {
+            Symbol.ClassSymbol superClass = (Symbol.ClassSymbol) classDecl.sym.getSuperclass().tsym;
+            if (bufferCodecProblem(maker, utils, superClass) != null)
+                return "superclass " + superClass + " has no ByteBuffer codec";
+        }
+        return null;
+    }
+
+    private static boolean hasCompiledBufferCodec(JavacElements utils, Symbol.ClassSymbol type) {
+        Symbol.ClassSymbol codec = utils.getTypeElement(AutoSerializableProcessor.codecClassName(type));
+        if (codec == null)
+            return false;
+        for (Symbol member : codec.getEnclosedElements()) {
+            if (member.getKind() == javax.lang.model.element.ElementKind.METHOD && member.name.contentEquals("writeTo"))
+                return true;
+        }
+        return false;
+    }
+
+    private List<JCStatement> writeStatements(boolean bufferMode) {
         List<JCStatement> statements = List.nil();
 
-        FieldGrouper fieldGrouper = new FieldGrouper(classDecl);
-        java.util.List<java.util.List<JCVariableDecl>> fieldGroups = fieldGrouper.getFieldGroups();
+        java.util.List<java.util.List<JCVariableDecl>> fieldGroups = fieldGroups();
 
+        boolean wideFlags = isWideFlags(fieldGroups);
         if (!fieldGroups.isEmpty()) {
             JCExpression flagsInit = maker.Apply(List.<JCExpression>nil(), ident("prepareFlags"), List.of((JCExpression) ident("self")));
 
-            JCStatement flagsDef = maker.VarDef(maker.Modifiers(0), utils.getName("flags"), maker.TypeIdent(TypeTag.LONG), flagsInit);
+            JCStatement flagsDef = maker.VarDef(maker.Modifiers(0), utils.getName("flags"), flagsType(wideFlags), flagsInit);
             statements = statements.append(flagsDef);
 
-            statements = statements.append(new StatementFactory(maker, utils, (JCVariableDecl) flagsDef, true).compactWriteStatement());
+            if (wideFlags) {
+                JCExpression writeFlags = maker.Select(makeEgenIOUtilsSelect(), utils.getName("writeFlags"));
+                writeFlags = maker.Apply(List.<JCExpression>nil(), writeFlags, List.of((JCExpression) ident("out"), ident("flags")));
+                statements = statements.append(maker.Exec(writeFlags));
+            } else {
+                statements = statements.append(new StatementFactory(maker, utils, (JCVariableDecl) flagsDef, true, bufferMode).compactWriteStatement());
+            }
         }
 
 
+        java.util.List<java.util.List<JCVariableDecl>> words = bitWords();
+        for (int i = 0; i < words.size(); i++) {
+            JCExpression word = null;
+            int offset = 0;
+            for (JCVariableDecl var : words.get(i)) {
+                JCExpression value = new StatementFactory(maker, utils, var, false, bufferMode).packedValueExpression();
+                if (offset != 0)
+                    value = maker.Binary(Tag.SL, value, maker.Literal(offset));
+                word = word == null ? value : maker.Binary(Tag.BITOR, word, value);
+                offset += BitFieldPacker.bitWidth(var);
+            }
+
+            JCStatement wordDef = maker.VarDef(maker.Modifiers(0), utils.getName("bits" + i), maker.TypeIdent(TypeTag.LONG), word);
+            statements = statements.append(wordDef);
+            statements = statements.append(new StatementFactory(maker, utils, (JCVariableDecl) wordDef, true, bufferMode).compactWriteStatement());
+        }
+
         for (int i = 0; i < fieldGroups.size(); i++) {
-            GroupStatementFactory groupStatementFactory = new GroupStatementFactory(fieldGroups.get(i), i, maker, utils);
+            GroupStatementFactory groupStatementFactory = new GroupStatementFactory(fieldGroups.get(i), i, maker, utils, bufferMode, wideFlags);
             statements = statements.append(groupStatementFactory.groupWriteStatement());
         }
 
         for (JCTree tree : classDecl.defs) {
             if (tree instanceof JCTree.JCVariableDecl) {
                 JCTree.JCVariableDecl var = (JCTree.JCVariableDecl) tree;
-                if (FieldGrouper.PRESENCE.equals(AutoSerializableProcessor.getEgenAnnotationType(var)))
+                if (groupedFields.contains(var))
                     continue;
 
                 if ((var.mods.flags & (Flags.TRANSIENT | Flags.STATIC)) != 0)
                     continue;
 
-                StatementFactory statementFactory = new StatementFactory(maker, utils, var);
+                if (BitFieldPacker.bitWidth(var) != 0)
+                    continue;
+
+                StatementFactory statementFactory = new StatementFactory(maker, utils, var, false, bufferMode);
                 statements = statements.append(statementFactory.writeStatement());
             }
         }
 
-        return maker.Block(0, statements);
+        return statements;
     }
 
-    public JCBlock readContentsBlock() {
+    private List<JCStatement> readStatements(boolean bufferMode) {
         List<JCStatement> statements = List.nil();
 
-        FieldGrouper fieldGrouper = new FieldGrouper(classDecl);
-        java.util.List<java.util.List<JCVariableDecl>> fieldGroups = fieldGrouper.getFieldGroups();
+        java.util.List<java.util.List<JCVariableDecl>> fieldGroups = fieldGroups();
 
+        boolean wideFlags = isWideFlags(fieldGroups);
         if (!fieldGroups.isEmpty()) {
-            JCExpression flagsInit = makeDxlibIOUtilsSelect();
-            flagsInit = maker.Select(flagsInit, utils.getName("readCompactLong"));
-            flagsInit = maker.Apply(List.<JCExpression>nil(), flagsInit, List.of((JCExpression) ident("in")));
+            JCExpression flagsInit;
+            if (wideFlags) {
+                flagsInit = maker.Select(makeEgenIOUtilsSelect(), utils.getName("readFlags"));
+                flagsInit = maker.Apply(List.<JCExpression>nil(), flagsInit,
+                        List.of((JCExpression) ident("in"), maker.Literal(flagsWords(fieldGroups))));
+            } else {
+                flagsInit = maker.Select(makeCompactIOUtilsSelect(bufferMode), utils.getName("readCompactLong"));
+                flagsInit = maker.Apply(List.<JCExpression>nil(), flagsInit, List.of((JCExpression) ident("in")));
+            }
 
-            JCStatement flagsDef = maker.VarDef(maker.Modifiers(0), utils.getName("flags"), maker.TypeIdent(TypeTag.LONG), flagsInit);
+            JCStatement flagsDef = maker.VarDef(maker.Modifiers(0), utils.getName("flags"), flagsType(wideFlags), flagsInit);
             statements = statements.append(flagsDef);
         }
 
+        java.util.List<java.util.List<JCVariableDecl>> words = bitWords();
+        for (int i = 0; i < words.size(); i++) {
+            JCExpression wordInit = maker.Select(makeCompactIOUtilsSelect(bufferMode), utils.getName("readCompactLong"));
+            wordInit = maker.Apply(List.<JCExpression>nil(), wordInit, List.of((JCExpression) ident("in")));
+            statements = statements.append(maker.VarDef(maker.Modifiers(0), utils.getName("bits" + i), maker.TypeIdent(TypeTag.LONG), wordInit));
+
+            int offset = 0;
+            for (JCVariableDecl var : words.get(i)) {
+                int width = BitFieldPacker.bitWidth(var);
+                statements = statements.append(new StatementFactory(maker, utils, var, false, bufferMode).unpackStatement("bits" + i, offset, width));
+                offset += width;
+            }
+        }
+
         for (int i = 0; i < fieldGroups.size(); i++) {
-            GroupStatementFactory groupStatementFactory = new GroupStatementFactory(fieldGroups.get(i), i, maker, utils);
+            GroupStatementFactory groupStatementFactory = new GroupStatementFactory(fieldGroups.get(i), i, maker, utils, bufferMode, wideFlags);
             statements = statements.append(groupStatementFactory.groupReadStatement());
         }
 
         for (JCTree tree : classDecl.defs) {
             if (tree instanceof JCTree.JCVariableDecl) {
                 JCTree.JCVariableDecl var = (JCTree.JCVariableDecl) tree;
-                if (FieldGrouper.PRESENCE.equals(AutoSerializableProcessor.getEgenAnnotationType(var)))
+                if (groupedFields.contains(var))
                     continue;
 
                 if ((var.mods.flags & (Flags.TRANSIENT | Flags.STATIC)) != 0)
                     continue;
 
-                StatementFactory statementFactory = new StatementFactory(maker, utils, var);
+                if (BitFieldPacker.bitWidth(var) != 0)
+                    continue;
+
+                StatementFactory statementFactory = new StatementFactory(maker, utils, var, false, bufferMode);
                 statements = statements.append(statementFactory.readStatement());
             }
         }
 
-        return maker.Block(0, statements);
+        return statements;
     }
 
+    /**
+     * Class with @AutoSerializable(flatten = true) writes the whole hierarchy in its writeObject() by writeInline() chain,
+     * so writeObject() of its superclasses write nothing when called for its instances.
+     */
     public JCBlock writeObjectBlock() {
         List<JCStatement> statements = List.nil();
-        JCExpression expression = maker.Apply(List.<JCExpression>nil(), ident("writeContents"),
-                List.of(ident("out"), ident("this")));
-        statements = statements.append(maker.Exec(expression));
+        JCExpression expression = isFlatten() ?
+                maker.Apply(List.<JCExpression>nil(), codecMethod("writeInline"), List.of(ident("out"), ident("this"), maker.Literal(false))) :
+                maker.Apply(List.<JCExpression>nil(), codecMethod("writeContents"), List.of(ident("out"), ident("this")));
+        statements = statements.append(flattenedBelowCheck(maker.Exec(expression)));
         return maker.Block(0, statements);
     }
 
     public JCBlock readObjectBlock() {
         List<JCStatement> statements = List.nil();
-        JCExpression expression = maker.Apply(List.<JCExpression>nil(), ident("readContents"),
-                List.of(ident("in"), ident("this")));
-        statements = statements.append(maker.Exec(expression));
+        JCExpression expression = isFlatten() ?
+                maker.Apply(List.<JCExpression>nil(), codecMethod("readInline"), List.of(ident("in"), ident("this"))) :
+                maker.Apply(List.<JCExpression>nil(), codecMethod("readContents"), List.of(ident("in"), ident("this")));
+        statements = statements.append(flattenedBelowCheck(maker.Exec(expression)));
         return maker.Block(0, statements);
     }
 
+    /**
+     * Externalizable class writes the whole hierarchy like @Inline does, since superclasses' writeObject() isn't called.
+     * Generated methods need object streams, other ObjectOutput/ObjectInput implementations are rejected by IOException.
+     */
+    public JCBlock writeExternalBlock() {
+        JCExpression out = maker.TypeCast(makeSelectExpr("java.io.ObjectOutputStream"), ident("out"));
+        JCExpression expression = maker.Apply(List.<JCExpression>nil(), codecMethod("writeInline"), List.of(out, ident("this"), maker.Literal(false)));
+        return maker.Block(0, List.of(objectStreamCheck("out", "java.io.ObjectOutputStream"), maker.Exec(expression)));
+    }
+
+    public JCBlock readExternalBlock() {
+        JCExpression in = maker.TypeCast(makeSelectExpr("java.io.ObjectInputStream"), ident("in"));
+        JCExpression expression = maker.Apply(List.<JCExpression>nil(), codecMethod("readInline"), List.of(in, ident("this")));
+        return maker.Block(0, List.of(objectStreamCheck("in", "java.io.ObjectInputStream"), maker.Exec(expression)));
+    }
+
+    private JCStatement objectStreamCheck(String param, String streamClass) {
+        JCExpression isStream = maker.TypeTest(ident(param), makeSelectExpr(streamClass));
+        JCExpression actualClass = maker.Apply(List.<JCExpression>nil(),
+                maker.Select(maker.Apply(List.<JCExpression>nil(), maker.Select(ident(param), utils.getName("getClass")),
+                        List.<JCExpression>nil()), utils.getName("getName")), List.<JCExpression>nil());
+        JCExpression message = maker.Binary(Tag.PLUS, maker.Literal("EGEN: Externalizable " + classDecl.sym.getQualifiedName() +
+                " can be transmitted only by " + streamClass + ", not by "), actualClass);
+        JCStatement throwException = maker.Throw(maker.NewClass(null, List.<JCExpression>nil(),
+                makeSelectExpr("java.io.IOException"), List.of(message), null));
+        return maker.If(maker.Unary(Tag.NOT, maker.Parens(isStream)), throwException, null);
+    }
+
+    /**
+     * Instance methods stay in the class and call static ones, which may live in a companion codec class.
+     */
+    private JCExpression codecMethod(String name) {
+        return makeSelectExpr(AutoSerializableProcessor.codecClassName(classDecl.sym) + "." + name);
+    }
+
+    private JCExpression superCodecMethod(String name) {
+        Symbol.ClassSymbol superClass = (Symbol.ClassSymbol) classDecl.sym.getSuperclass().tsym;
+        return makeSelectExpr(AutoSerializableProcessor.codecClassName(superClass) + "." + name);
+    }
+
+    /**
+     * @return true if the class is flattened (superclasses rely on EGEN's IOUtils to skip their part, so not with dxlib runtime)
+     */
+    public boolean isFlatten() {
+        return !AutoSerializableProcessor.isDxlibRuntime() && AutoSerializableProcessor.isClassOptionEnabled(classDecl, FLATTEN);
+    }
+
+    /**
+     * Skips the statement when a subclass of the runtime object is flattened. The hierarchy is walked only for
+     * subclass instances, and final classes are not guarded at all.
+     */
+    private JCStatement flattenedBelowCheck(JCStatement statement) {
+        if (AutoSerializableProcessor.isDxlibRuntime() || (classDecl.sym.flags() & Flags.FINAL) != 0)
+            return statement;
+        JCExpression check = maker.Select(makeEgenIOUtilsSelect(), utils.getName("isFlattenedBelow"));
+        check = maker.Apply(List.<JCExpression>nil(), check, List.of(getClassCall(), thisClassLiteral()));
+        JCExpression exactClass = maker.Binary(Tag.EQ, getClassCall(), thisClassLiteral());
+        return maker.If(maker.Binary(Tag.OR, exactClass, maker.Unary(Tag.NOT, check)), statement, null);
+    }
+
+    private JCExpression getClassCall() {
+        return maker.Apply(List.<JCExpression>nil(), ident("getClass"), List.<JCExpression>nil());
+    }
+
+    private JCExpression thisClassLiteral() {
+        return makeSelectExpr(classDecl.sym.type.toString().split("<")[0] + ".class");
+    }
+
+    /**
+     * @return static field that marks flattened class for {@link IOUtils#isFlattenedBelow(Class, Class)}
+     */
+    public JCVariableDecl flattenMarkerField() {
+        return maker.VarDef(maker.Modifiers(Flags.PRIVATE | Flags.STATIC | Flags.FINAL), utils.getName(IOUtils.FLATTEN_MARKER),
+                maker.TypeIdent(TypeTag.BOOLEAN), maker.Literal(true));
+    }
+
     public JCBlock writeInlineBlock() {
         List<JCStatement> statements = List.nil();
 
@@ -146,8 +402,7 @@ public class MethodBlockFactory {
         statements = statements.append(writeContentsCall);
 
         if (classDecl.extending != null) {
-            String superTypeName = classDecl.extending.toString().split("<")[0];
-            JCExpression superMethodName = makeSelectExpr(superTypeName + ".writeInline");
+            JCExpression superMethodName = superCodecMethod("writeInline");
             JCExpression superInlineCall = maker.Apply(List.<JCExpression>nil(), superMethodName,
                     List.of(ident("out"), ident("self"), maker.Literal(false)));
             statements = statements.append(maker.Exec(superInlineCall));
@@ -164,8 +419,7 @@ public class MethodBlockFactory {
         statements = statements.append(readContentsCall);
 
         if (classDecl.extending != null) {
-            String superTypeName = classDecl.extending.toString().split("<")[0];
-            JCExpression superMethodName = makeSelectExpr(superTypeName + ".readInline");
+            JCExpression superMethodName = superCodecMethod("readInline");
             JCExpression superInlineCall = maker.Apply(List.<JCExpression>nil(), superMethodName,
                     List.of(ident("in"), (JCExpression)ident("self")));
             statements = statements.append(maker.Exec(superInlineCall));
@@ -177,13 +431,17 @@ public class MethodBlockFactory {
     public JCBlock prepareFlagsBlock() {
         List<JCStatement> statements = List.nil();
 
-        JCStatement flagsDef = maker.VarDef(maker.Modifiers(0), utils.getName("flags"), maker.TypeIdent(TypeTag.LONG), maker.Literal(0));
+        java.util.List<java.util.List<JCVariableDecl>> fieldGroups = fieldGroups();
+        boolean wideFlags = isWideFlags(fieldGroups);
+
+        JCExpression flagsInit = wideFlags ?
+                maker.NewArray(maker.TypeIdent(TypeTag.LONG), List.of((JCExpression) maker.Literal(flagsWords(fieldGroups))), null) :
+                maker.Literal(0);
+        JCStatement flagsDef = maker.VarDef(maker.Modifiers(0), utils.getName("flags"), flagsType(wideFlags), flagsInit);
         statements = statements.append(flagsDef);
 
-        FieldGrouper fieldGrouper = new FieldGrouper(classDecl);
-        java.util.List<java.util.List<JCVariableDecl>> fieldGroups = fieldGrouper.getFieldGroups();
         for (int i = 0; i < fieldGroups.size(); i++) {
-            GroupStatementFactory groupStatementFactory = new GroupStatementFactory(fieldGroups.get(i), i, maker, utils);
+            GroupStatementFactory groupStatementFactory = new GroupStatementFactory(fieldGroups.get(i), i, maker, utils, false, wideFlags);
             statements = statements.append(groupStatementFactory.groupFlagsStatement());
         }
 
@@ -192,10 +450,57 @@ public class MethodBlockFactory {
         return maker.Block(0, statements);
     }
 
+    private java.util.List<java.util.List<JCVariableDecl>> fieldGroups() {
+        if (fieldGroups == null) {
+            fieldGroups = new FieldGrouper(classDecl).getFieldGroups();
+            groupedFields = java.util.Collections.newSetFromMap(new java.util.IdentityHashMap<JCVariableDecl, Boolean>());
+            for (java.util.List<JCVariableDecl> fieldGroup : fieldGroups)
+                groupedFields.addAll(fieldGroup);
+        }
+        return fieldGroups;
+    }
+
+    private java.util.List<java.util.List<JCVariableDecl>> bitWords() {
+        if (bitWords == null)
+            bitWords = new BitFieldPacker(classDecl).getWords();
+        return bitWords;
+    }
+
+    /**
+     * @return true if presence flags don't fit into a single long and are kept in long[] instead
+     */
+    public boolean hasWideFlags() {
+        return isWideFlags(fieldGroups());
+    }
+
+    private static boolean isWideFlags(java.util.List<java.util.List<JCVariableDecl>> fieldGroups) {
+        return fieldGroups.size() > Long.SIZE;
+    }
+
+    private int flagsWords(java.util.List<java.util.List<JCVariableDecl>> fieldGroups) {
+        int words = (fieldGroups.size() + Long.SIZE - 1) / Long.SIZE;
+        if (words > IOUtils.MAX_FLAGS_WORDS)
+            throw new InvalidDeclarationException("Too many presence groups: " + fieldGroups.size() + ", up to " +
+                    IOUtils.MAX_FLAGS_WORDS * Long.SIZE + " are supported", classDecl.sym);
+        return words;
+    }
+
+    public JCExpression flagsType(boolean wideFlags) {
+        return wideFlags ? maker.TypeArray(maker.TypeIdent(TypeTag.LONG)) : maker.TypeIdent(TypeTag.LONG);
+    }
+
+    private JCExpression makeCompactIOUtilsSelect(boolean bufferMode) {
+        return bufferMode || !AutoSerializableProcessor.isDxlibRuntime() ? makeEgenIOUtilsSelect() : makeDxlibIOUtilsSelect();
+    }
+
     private JCExpression makeDxlibIOUtilsSelect() {
         return makeSelectExpr("com.devexperts.io.IOUtil");
     }
 
+    private JCExpression makeEgenIOUtilsSelect() {
+        return makeSelectExpr("com.devexperts.egen.processor.IOUtils");
+    }
+
     private JCExpression makeSelectExpr(String select) {
         String[] parts = select.split("\\.");
         JCExpression expression = ident(parts[0]);
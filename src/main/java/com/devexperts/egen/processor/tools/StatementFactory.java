@@ -14,7 +14,11 @@ package com.devexperts.egen.processor.tools;
 
 import com.devexperts.egen.processor.AutoSerializableProcessor;
 import com.devexperts.egen.processor.CompactConfiguration;
+import com.devexperts.egen.processor.IOUtils;
 import com.sun.tools.javac.code.Attribute;
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.code.TypeTag;
 import com.sun.tools.javac.model.JavacElements;
 import com.sun.tools.javac.tree.TreeMaker;
@@ -24,20 +28,80 @@ import com.sun.tools.javac.util.Pair;
 import static com.sun.tools.javac.tree.JCTree.*;
 
 public class StatementFactory {
+    private static final java.util.Map<String, String> BOXED_PRIMITIVES = new java.util.HashMap<>();
+    static {
+        BOXED_PRIMITIVES.put("Boolean", "boolean");
+        BOXED_PRIMITIVES.put("Character", "char");
+        BOXED_PRIMITIVES.put("Byte", "byte");
+        BOXED_PRIMITIVES.put("Short", "short");
+        BOXED_PRIMITIVES.put("Integer", "int");
+        BOXED_PRIMITIVES.put("Long", "long");
+        BOXED_PRIMITIVES.put("Float", "float");
+        BOXED_PRIMITIVES.put("Double", "double");
+    }
+
     TreeMaker maker;
     JavacElements utils;
     JCVariableDecl variableDecl;
     JCExpression var;
+    boolean bufferMode; // generate code for java.nio.ByteBuffer "out"/"in" instead of object streams
+    boolean decimal; // @Decimal applies to the variable itself or to elements of enclosing container
+    int decimalPrecision;
+    boolean canonical; // @Canonical applies to the variable itself or to elements of enclosing container
+    boolean ascii; // @Ascii applies to the variable itself or to elements of enclosing container
 
     public StatementFactory(TreeMaker maker, JavacElements utils, JCVariableDecl var) {
         this(maker, utils, var, false);
     }
 
     public StatementFactory(TreeMaker maker, JavacElements utils, JCVariableDecl var, boolean isLocalVar) {
+        this(maker, utils, var, isLocalVar, false);
+    }
+
+    public StatementFactory(TreeMaker maker, JavacElements utils, JCVariableDecl var, boolean isLocalVar, boolean bufferMode) {
         this.maker = maker;
         this.utils = utils;
         this.variableDecl = var;
         this.var = ident((isLocalVar ? "" : "self.") + var.getName().toString());
+        this.bufferMode = bufferMode;
+
+        JCAnnotation decimalAnnotation = AutoSerializableProcessor.getEgenAnnotation(var, "Decimal");
+        if (decimalAnnotation != null) {
+            this.decimal = true;
+            this.decimalPrecision = decimalPrecision(var, decimalAnnotation);
+        }
+        this.canonical = AutoSerializableProcessor.getEgenAnnotation(var, "Canonical") != null;
+        this.ascii = AutoSerializableProcessor.getEgenAnnotation(var, "Ascii") != null;
+    }
+
+    private static int decimalPrecision(JCVariableDecl var, JCAnnotation decimal) {
+        int precision = intAnnotationValue(var, decimal, "Decimal", "precision", -1);
+        if (precision < -1 || precision > IOUtils.MAX_DECIMAL_SCALE)
+            throw new InvalidDeclarationException("@Decimal precision of field " + var.name + " must be -1 or 0.." +
+                    IOUtils.MAX_DECIMAL_SCALE + ", found " + precision, var.sym);
+        return precision;
+    }
+
+    private static int intAnnotationValue(JCVariableDecl var, JCAnnotation annotation, String annotationName, String name,
+            int defaultValue) {
+        int result = defaultValue;
+        // value is taken from attributed annotation when available, so that named constants work
+        if (annotation.attribute != null) {
+            for (Pair<Symbol.MethodSymbol, Attribute> pair : annotation.attribute.values) {
+                if (pair.fst.name.contentEquals(name) && pair.snd instanceof Attribute.Constant)
+                    result = ((Number) ((Attribute.Constant) pair.snd).value).intValue();
+            }
+        } else {
+            String value = AutoSerializableProcessor.getAnnotationValue(annotation, name);
+            try {
+                if (value != null)
+                    result = Integer.decode(value);
+            } catch (NumberFormatException e) {
+                throw new InvalidDeclarationException("@" + annotationName + " " + name + " of field " + var.name +
+                        " must be an integer literal, found " + value, var.sym);
+            }
+        }
+        return result;
     }
 
     public JCStatement writeStatement() {
@@ -51,7 +115,14 @@ public class StatementFactory {
                 return inlineWriteStatement();
             case "Ordinal":
                 return ordinalWriteStatement();
+            case "XorCompressed":
+                return xorCompressedWriteStatement();
+            case "Dictionary":
+                return dictionaryWriteStatement();
             default:
+                if (decimal || canonical || ascii)
+                    return compactWriteStatement();
+
                 SerializationStrategyRecord strategyRecord = SerializationStrategyRecord.getByVariable(variableDecl);
                 if (strategyRecord == null) {
                     return commonWriteStatement();
@@ -72,7 +143,14 @@ public class StatementFactory {
                 return inlineReadStatement();
             case "Ordinal":
                 return ordinalReadStatement();
+            case "XorCompressed":
+                return xorCompressedReadStatement();
+            case "Dictionary":
+                return dictionaryReadStatement();
             default:
+                if (decimal || canonical || ascii)
+                    return compactReadStatement();
+
                 SerializationStrategyRecord strategyRecord = SerializationStrategyRecord.getByVariable(variableDecl);
                 if (strategyRecord == null) {
                     return commonReadStatement();
@@ -82,48 +160,139 @@ public class StatementFactory {
         }
     }
 
+    /**
+     * Marker byte before inlined content is -1 for null, 0 for the declared type and k for k-th of its
+     * subclasses listed in @AutoSerializable(subclasses = ...), see {@link #inlineSubclasses(JCVariableDecl)}.
+     */
     public JCStatement inlineWriteStatement() {
-        JCExpression expression = var;
+        JCExpression condition = maker.Binary(Tag.NE, var, maker.Literal(TypeTag.BOT, null));
+
+        // unknown subclasses end up in writeInline() of the declared type, which rejects them;
+        // writeTo() has no such check, so buffer codec rejects them here
+        String declared = qualifiedTypeName(variableDecl);
+        JCStatement statement = maker.Block(0, List.of((JCStatement) maker.Exec(writeByteExpr(0)),
+                maker.Exec(inlineWriteExpr(declared, var))));
+        if (bufferMode) {
+            JCStatement reject = maker.Throw(maker.NewClass(null, List.<JCExpression>nil(),
+                    ident("java.lang.UnsupportedOperationException"),
+                    List.of((JCExpression) maker.Literal("EGEN: Error: attempt of subclass inlining.")), null));
+            statement = (variableDecl.vartype.type.tsym.flags() & Flags.ABSTRACT) != 0 ? reject :
+                    maker.If(sameClassExpr(declared), statement, reject);
+        }
 
-        JCExpression condition = maker.Binary(Tag.NE, expression, maker.Literal(TypeTag.BOT, null));
+        java.util.List<String> subclasses = inlineSubclasses(variableDecl);
+        for (int i = subclasses.size() - 1; i >= 0; i--) {
+            String subclass = subclasses.get(i);
+            JCStatement writeSubclass = maker.Block(0, List.of((JCStatement) maker.Exec(writeByteExpr(i + 1)),
+                    maker.Exec(inlineWriteExpr(subclass, maker.TypeCast(ident(subclass), var)))));
+            statement = maker.If(sameClassExpr(subclass), writeSubclass, statement);
+        }
+
+        return maker.If(condition, statement, maker.Exec(writeByteExpr(-1)));
+    }
+
+    private JCExpression sameClassExpr(String className) {
+        JCExpression getClass = maker.Apply(List.<JCExpression>nil(), maker.Select(var, utils.getName("getClass")),
+                List.<JCExpression>nil());
+        return maker.Binary(Tag.EQ, getClass, maker.Select(ident(className), utils.getName("class")));
+    }
+
+    public JCStatement inlineReadStatement() {
+        String markerName = variableDecl.name.toString() + "marker";
+        JCStatement markerDef = maker.VarDef(maker.Modifiers(0), utils.getName(markerName), maker.TypeIdent(TypeTag.BYTE), readByteExpr());
 
-        JCExpression writeExpression = maker.Select(expression, utils.getName("writeInline"));
-        writeExpression = maker.Apply(List.<JCExpression>nil(), writeExpression,
-                List.of(ident("out"), var, maker.Literal(true)));
+        JCExpression unknownMarker = maker.Binary(Tag.PLUS, maker.Literal("Unknown inline subclass marker "), ident(markerName));
+        JCStatement statement = maker.Throw(maker.NewClass(null, List.<JCExpression>nil(),
+                ident("java.lang.IllegalArgumentException"), List.of(unknownMarker), null));
 
-        JCExpression writeNullByte = maker.Select(ident("out"), utils.getName("writeByte"));
-        writeNullByte = maker.Apply(List.<JCExpression>nil(), writeNullByte, List.of((JCExpression) maker.Literal(-1)));
+        java.util.List<String> subclasses = inlineSubclasses(variableDecl);
+        for (int i = subclasses.size() - 1; i >= 0; i--)
+            statement = maker.If(maker.Binary(Tag.EQ, ident(markerName), maker.Literal(i + 1)), inlineReadBlock(subclasses.get(i)), statement);
 
-        JCExpression writeNotNullByte = maker.Select(ident("out"), utils.getName("writeByte"));
-        writeNotNullByte = maker.Apply(List.<JCExpression>nil(), writeNotNullByte, List.of((JCExpression) maker.Literal(0)));
+        if ((variableDecl.vartype.type.tsym.flags() & Flags.ABSTRACT) == 0)
+            statement = maker.If(maker.Binary(Tag.EQ, ident(markerName), maker.Literal(0)), inlineReadBlock(qualifiedTypeName(variableDecl)), statement);
 
-        return maker.If(condition,
-                maker.Block(0, List.of((JCStatement) maker.Exec(writeNotNullByte), maker.Exec(writeExpression))),
-                maker.Exec(writeNullByte));
+        JCExpression elseExpr = maker.Assign(var, maker.Literal(TypeTag.BOT, null));
+        statement = maker.If(maker.Binary(Tag.EQ, ident(markerName), maker.Literal(-1)), maker.Exec(elseExpr), statement);
+        return maker.Block(0, List.of(markerDef, statement));
     }
 
-    public JCStatement inlineReadStatement() {
-        JCExpression expression = maker.Select(ident("in"), utils.getName("readByte"));
-        expression = maker.Apply(List.<JCExpression>nil(), expression, List.<JCExpression>nil());
+    private JCExpression inlineWriteExpr(String className, JCExpression value) {
+        if (bufferMode) {
+            checkBufferCodec(className);
+            JCExpression expression = maker.Select(ident(codecClassName(className)), utils.getName("writeTo"));
+            return maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("out"), value));
+        }
+        JCExpression expression = maker.Select(ident(codecClassName(className)), utils.getName("writeInline"));
+        return maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("out"), value, maker.Literal(true)));
+    }
 
-        JCExpression condition = maker.Binary(Tag.NE, expression, maker.Literal(-1));
+    private JCBlock inlineReadBlock(String className) {
+        if (bufferMode)
+            checkBufferCodec(className);
+        JCExpression newInstance = maker.Assign(var,
+                maker.NewClass(null, List.<JCExpression>nil(), ident(className), List.<JCExpression>nil(), null));
 
-        JCExpression expression1 = maker.Assign(var,
-                maker.NewClass(null, List.<JCExpression>nil(), ident(variableDecl.vartype.toString()), List.<JCExpression>nil(), null));
+        JCExpression read = maker.Select(ident(codecClassName(className)), utils.getName(bufferMode ? "readFrom" : "readInline"));
+        read = maker.Apply(List.<JCExpression>nil(), read, List.of(ident("in"), maker.TypeCast(ident(className), var)));
 
-        JCExpression expression2 = var;
-        expression2 = maker.Select(expression2, utils.getName("readInline"));
-        expression2 = maker.Apply(List.<JCExpression>nil(), expression2,
-                List.of(ident("in"), var));
+        return maker.Block(0, List.of((JCStatement) maker.Exec(newInstance), maker.Exec(read)));
+    }
 
-        JCBlock block = maker.Block(0, List.of((JCStatement) maker.Exec(expression1), maker.Exec(expression2)));
+    private void checkBufferCodec(String className) {
+        String problem = MethodBlockFactory.bufferCodecProblem(maker, utils, utils.getTypeElement(className));
+        if (problem != null)
+            throw new UnsupportedOperationException("field " + variableDecl.name + " can't be inlined into a buffer, " + problem);
+    }
 
-        JCExpression elseExpr = maker.Assign(var, maker.Literal(TypeTag.BOT, null));
-        return maker.If(condition, block, maker.Exec(elseExpr));
+    private String codecClassName(String className) {
+        return AutoSerializableProcessor.codecClassName(utils.getTypeElement(className));
+    }
+
+    /**
+     * @return qualified names of subclasses listed in @AutoSerializable(subclasses = ...) of variable's type,
+     * in the order of their markers
+     */
+    public static java.util.List<String> inlineSubclasses(JCVariableDecl var) {
+        java.util.List<String> result = new java.util.ArrayList<>();
+        Symbol.TypeSymbol declared = var.vartype.type.tsym;
+        Attribute.Compound annotation = AutoSerializableProcessor.getAutoSerializable(declared);
+        Attribute.Array subclasses = null;
+        if (annotation != null) {
+            for (Pair<Symbol.MethodSymbol, Attribute> pair : annotation.values) {
+                if (pair.fst.name.contentEquals("subclasses") && pair.snd instanceof Attribute.Array)
+                    subclasses = (Attribute.Array) pair.snd;
+            }
+        }
+        if (subclasses == null)
+            return result;
+
+        // errors point to the annotation of declared type, the field is named since that type may come from a class file
+        for (Attribute value : subclasses.values) {
+            Symbol.ClassSymbol classSymbol = (Symbol.ClassSymbol) ((Attribute.Class) value).getValue().tsym;
+            if ((classSymbol.flags() & Flags.ABSTRACT) != 0 || AutoSerializableProcessor.getAutoSerializable(classSymbol) == null ||
+                    !isStrictSubclass(classSymbol, declared) || result.contains(classSymbol.getQualifiedName().toString()))
+                throw new InvalidDeclarationException(classSymbol + " listed in subclasses of " + declared + " (inlined by field " +
+                        var.name + ") shall be its distinct non-abstract @AutoSerializable subclass", declared, annotation);
+            result.add(classSymbol.getQualifiedName().toString());
+        }
+        if (result.size() > Byte.MAX_VALUE)
+            throw new InvalidDeclarationException("Too many subclasses of " + declared + " (inlined by field " + var.name +
+                    "), up to " + Byte.MAX_VALUE + " are supported", declared, annotation);
+        return result;
+    }
+
+    private static boolean isStrictSubclass(Symbol.ClassSymbol classSymbol, Symbol.TypeSymbol declared) {
+        for (Type t = classSymbol.getSuperclass(); t.hasTag(TypeTag.CLASS); t = ((Symbol.ClassSymbol) t.tsym).getSuperclass()) {
+            if (t.tsym == declared)
+                return true;
+        }
+        return false;
     }
 
     public JCStatement strategyWriteStatement(SerializationStrategyRecord strategyRecord) {
-        JCExpression expression = makeDxlibIOUtilsSelect();
+        checkBufferStrategy(strategyRecord);
+        JCExpression expression = makeStrategyIOUtilsSelect(strategyRecord);
         expression = maker.Select(expression, utils.getName("write" + strategyRecord.targetStrategy));
 
         String[] toTargetSelects = strategyRecord.toTarget.split("\\.");
@@ -138,7 +307,8 @@ public class StatementFactory {
     }
 
     public JCStatement strategyReadStatement(SerializationStrategyRecord strategyRecord) {
-        JCExpression expression = makeDxlibIOUtilsSelect();
+        checkBufferStrategy(strategyRecord);
+        JCExpression expression = makeStrategyIOUtilsSelect(strategyRecord);
         expression = maker.Select(expression, utils.getName("read" + strategyRecord.targetStrategy));
 
         String[] fromTargetSelects = strategyRecord.fromTarget.split("\\.");
@@ -152,20 +322,23 @@ public class StatementFactory {
     }
 
     public JCStatement deltaWriteStatement() {
+        deltaOrder(); // validates order for any field type
         String typeName = variableDecl.vartype.toString();
         switch (typeName) {
             case "int[]":
-            case "long[]": {
+            case "long[]":
+            case "double[]": {
                 String capitalizedElementName = Character.toUpperCase(typeName.charAt(0)) +
                         typeName.substring(1, typeName.length() - 2);
                 JCExpression expression = makeEgenIOUtilsSelect();
-                expression = maker.Select(expression, utils.getName("writeDelta" + capitalizedElementName + "Array"));
+                expression = maker.Select(expression, utils.getName(deltaArrayMethodPrefix("write") + capitalizedElementName + "Array"));
                 expression = maker.Apply(List.<JCExpression>nil(), expression,
                         List.of(ident("out"), var));
                 return maker.Exec(expression);
             }
             case "int":
-            case "long": {
+            case "long":
+            case "double": {
                 String capitalizedElementName = Character.toUpperCase(typeName.charAt(0)) +
                         typeName.substring(1, typeName.length());
                 JCExpression expression = makeEgenIOUtilsSelect();
@@ -180,19 +353,22 @@ public class StatementFactory {
     }
 
     public JCStatement deltaReadStatement() {
+        deltaOrder(); // validates order for any field type
         String typeName = variableDecl.vartype.toString();
         switch (typeName) {
             case "int[]":
-            case "long[]": {
+            case "long[]":
+            case "double[]": {
                 String capitalizedElementName = Character.toUpperCase(typeName.charAt(0)) +
                         typeName.substring(1, typeName.length() - 2);
                 JCExpression expression = makeEgenIOUtilsSelect();
-                expression = maker.Select(expression, utils.getName("readDelta" + capitalizedElementName + "Array"));
+                expression = maker.Select(expression, utils.getName(deltaArrayMethodPrefix("read") + capitalizedElementName + "Array"));
                 expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("in")));
                 return maker.Exec(maker.Assign(var, expression));
             }
             case "int":
-            case "long": {
+            case "long":
+            case "double": {
                 String capitalizedElementName = Character.toUpperCase(typeName.charAt(0)) +
                         typeName.substring(1, typeName.length());
                 JCExpression expression = makeEgenIOUtilsSelect();
@@ -205,6 +381,66 @@ public class StatementFactory {
         }
     }
 
+    /**
+     * @Delta(order = 2) on int[]/long[] selects delta-of-delta encoding.
+     */
+    private String deltaArrayMethodPrefix(String prefix) {
+        return deltaOrder() == 2 ? prefix + "DeltaOfDelta" : prefix + "Delta";
+    }
+
+    private int deltaOrder() {
+        JCAnnotation delta = AutoSerializableProcessor.getEgenAnnotation(variableDecl, "Delta");
+        int order = delta == null ? 1 : intAnnotationValue(variableDecl, delta, "Delta", "order", 1);
+        String typeName = variableDecl.vartype.toString();
+        if (order != 1 && (order != 2 || !"int[]".equals(typeName) && !"long[]".equals(typeName)))
+            throw new InvalidDeclarationException("@Delta order " + order + " is not supported for field " + variableDecl.name +
+                    " of type " + typeName, variableDecl.sym);
+        return order;
+    }
+
+    public JCStatement xorCompressedWriteStatement() {
+        if (!"double[]".equals(variableDecl.vartype.toString()))
+            return commonWriteStatement();
+
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("writeXorCompressedDoubleArray"));
+        expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("out"), var));
+        return maker.Exec(expression);
+    }
+
+    public JCStatement xorCompressedReadStatement() {
+        if (!"double[]".equals(variableDecl.vartype.toString()))
+            return commonReadStatement();
+
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("readXorCompressedDoubleArray"));
+        expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("in")));
+        return maker.Exec(maker.Assign(var, expression));
+    }
+
+    /**
+     * Dictionary is attached to the stream instance, so there is nothing to attach it to in case of ByteBuffer.
+     */
+    public JCStatement dictionaryWriteStatement() {
+        if (!"String".equals(variableDecl.vartype.toString()))
+            return commonWriteStatement();
+        if (bufferMode)
+            throw unsupportedInBuffer();
+
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("writeDictionaryString"));
+        expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("out"), var));
+        return maker.Exec(expression);
+    }
+
+    public JCStatement dictionaryReadStatement() {
+        if (!"String".equals(variableDecl.vartype.toString()))
+            return commonReadStatement();
+        if (bufferMode)
+            throw unsupportedInBuffer();
+
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("readDictionaryString"));
+        expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("in")));
+        return maker.Exec(maker.Assign(var, expression));
+    }
+
     public JCStatement compactWriteStatement() {
         String typeName = variableDecl.vartype.toString();
         switch (typeName) {
@@ -213,19 +449,27 @@ public class StatementFactory {
             case "Integer":
             case "Long": {
                 String capitalizedTypeName = Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
-                JCExpression expression = makeDxlibIOUtilsSelect();
+                JCExpression expression = makeCompactIOUtilsSelect();
                 expression = maker.Select(expression, utils.getName("writeCompact" + capitalizedTypeName));
                 expression = maker.Apply(List.<JCExpression>nil(), expression,
                         List.of(ident("out"), var));
                 return maker.Exec(expression);
             }
             case "String": {
-                JCExpression expression = makeDxlibIOUtilsSelect();
+                if (ascii)
+                    return asciiWriteStatement();
+
+                JCExpression expression = makeCompactIOUtilsSelect();
                 expression = maker.Select(expression, utils.getName("writeUTFString"));
                 expression = maker.Apply(List.<JCExpression>nil(), expression,
                         List.of(ident("out"), var));
                 return maker.Exec(expression);
             }
+            case "double":
+            case "float":
+            case "Double":
+            case "Float":
+                return decimal ? decimalWriteStatement(typeName) : commonWriteStatement();
             default:
                 if (CompactConfiguration.isRecursiveInlineEnabled() && isInlineApplicable(variableDecl))
                     return inlineWriteStatement();
@@ -254,17 +498,27 @@ public class StatementFactory {
             case "Integer":
             case "Long": {
                 String capitalizedTypeName = Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
-                JCExpression expression = makeDxlibIOUtilsSelect();
+                JCExpression expression = makeCompactIOUtilsSelect();
                 expression = maker.Select(expression, utils.getName("readCompact" + capitalizedTypeName));
                 expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("in")));
                 return maker.Exec(maker.Assign(var, expression));
             }
             case "String": {
-                JCExpression expression = makeDxlibIOUtilsSelect();
+                if (ascii)
+                    return asciiReadStatement();
+                if (canonical || AutoSerializableProcessor.isCanonicalize())
+                    return canonicalReadStatement();
+
+                JCExpression expression = makeCompactIOUtilsSelect();
                 expression = maker.Select(expression, utils.getName("readUTFString"));
                 expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("in")));
                 return maker.Exec(maker.Assign(var, expression));
             }
+            case "double":
+            case "float":
+            case "Double":
+            case "Float":
+                return decimal ? decimalReadStatement(typeName) : commonReadStatement();
             default:
                 if (CompactConfiguration.isRecursiveInlineEnabled() && isInlineApplicable(variableDecl))
                     return inlineReadStatement();
@@ -285,14 +539,57 @@ public class StatementFactory {
         }
     }
 
+    public JCStatement decimalWriteStatement(String typeName) {
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("write" + decimalMethodSuffix(typeName)));
+        expression = maker.Apply(List.<JCExpression>nil(), expression,
+                List.of(ident("out"), var, maker.Literal(decimalPrecision)));
+        return maker.Exec(expression);
+    }
+
+    public JCStatement decimalReadStatement(String typeName) {
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("read" + decimalMethodSuffix(typeName)));
+        expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("in")));
+        return maker.Exec(maker.Assign(var, expression));
+    }
+
+    /**
+     * Boxed values are written by *Object methods which reserve a code for null.
+     */
+    private static String decimalMethodSuffix(String typeName) {
+        String capitalizedTypeName = Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
+        return "Decimal" + capitalizedTypeName + (Character.isUpperCase(typeName.charAt(0)) ? "Object" : "");
+    }
+
+    public JCStatement asciiWriteStatement() {
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("writeAsciiString"));
+        expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("out"), var));
+        return maker.Exec(expression);
+    }
+
+    public JCStatement asciiReadStatement() {
+        String methodName = canonical || AutoSerializableProcessor.isCanonicalize() ? "readCanonicalAsciiString" : "readAsciiString";
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName(methodName));
+        expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("in")));
+        return maker.Exec(maker.Assign(var, expression));
+    }
+
+    /**
+     * Strings are written as usual, only reading goes through the cache of EGEN's IOUtils.
+     */
+    public JCStatement canonicalReadStatement() {
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("readCanonicalUTFString"));
+        expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("in")));
+        return maker.Exec(maker.Assign(var, expression));
+    }
+
     public JCStatement ordinalWriteStatement() {
-        JCExpression notNullExpr = makeDxlibIOUtilsSelect();
+        JCExpression notNullExpr = makeCompactIOUtilsSelect();
         notNullExpr = maker.Select(notNullExpr, utils.getName("writeCompactInt"));
-        JCExpression select = maker.Select(var, utils.getName("code"));
+        JCExpression select = maker.Select(var, utils.getName(isEnumApplicable(variableDecl) ? "ordinal" : "code"));
         notNullExpr = maker.Apply(List.<JCExpression>nil(), notNullExpr,
                 List.of(ident("out"), maker.Apply(List.<JCExpression>nil(), select, List.<JCExpression>nil())));
 
-        JCExpression nullExpr = makeDxlibIOUtilsSelect();
+        JCExpression nullExpr = makeCompactIOUtilsSelect();
         nullExpr = maker.Select(nullExpr, utils.getName("writeCompactInt"));
         nullExpr = maker.Apply(List.<JCExpression>nil(), nullExpr, List.of(ident("out"), maker.Literal(-1)));
 
@@ -304,23 +601,115 @@ public class StatementFactory {
         JCExpression classExpr = ident(variableDecl.vartype.toString());
         classExpr = maker.Select(classExpr, utils.getName("class"));
 
-        JCExpression readIntExpr = makeDxlibIOUtilsSelect();
+        JCExpression readIntExpr = makeCompactIOUtilsSelect();
         readIntExpr = maker.Select(readIntExpr, utils.getName("readCompactInt"));
         readIntExpr = maker.Apply(List.<JCExpression>nil(), readIntExpr, List.of(ident("in")));
         JCStatement intVarDef = maker.VarDef(maker.Modifiers(0), utils.getName(variableDecl.name.toString() + "ord"), maker.TypeIdent(TypeTag.INT), readIntExpr);
 
-        JCExpression expression = ident(variableDecl.vartype.toString());
-        expression = maker.Select(expression, utils.getName("findByCode"));
-        expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(classExpr, ident(variableDecl.name.toString() + "ord")));
+        JCExpression ordExpr = ident(variableDecl.name.toString() + "ord");
+        JCStatement assignStatement;
+        if (isEnumApplicable(variableDecl)) {
+            String valuesField = staticTableField(qualifiedTypeName(variableDecl), "values", "values");
+            assignStatement = maker.Exec(maker.Assign(var, maker.Indexed(ident(valuesField), ordExpr)));
+        } else {
+            JCExpression expression = ident(variableDecl.vartype.toString());
+            expression = maker.Select(expression, utils.getName("findByCode"));
+            expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(classExpr, ordExpr));
+            if (usesEgenRuntime()) {
+                // instances found by code are remembered in a dense table, findByCode() is called on a miss only
+                String codesField = staticTableField(qualifiedTypeName(variableDecl), "codes", null);
+                JCExpression cached = maker.Select(makeEgenIOUtilsSelect(), utils.getName("cachedByCode"));
+                cached = maker.Apply(List.<JCExpression>nil(), cached, List.of(ident(codesField), ordExpr));
+                JCExpression cache = maker.Select(makeEgenIOUtilsSelect(), utils.getName("cacheByCode"));
+                cache = maker.Apply(List.<JCExpression>nil(), cache, List.of(ident(codesField), ordExpr, expression));
+                assignStatement = maker.Block(0, List.of(
+                        maker.Exec(maker.Assign(var, cached)),
+                        maker.If(maker.Binary(Tag.EQ, var, maker.Literal(TypeTag.BOT, null)), maker.Exec(maker.Assign(var, cache)), null)
+                ));
+            } else {
+                assignStatement = maker.Exec(maker.Assign(var, expression));
+            }
+        }
 
         JCBinary cond = maker.Binary(Tag.NE, ident(variableDecl.name.toString() + "ord"), maker.Literal(-1));
-        JCIf jcIf = maker.If(cond, maker.Exec(maker.Assign(var, expression)), null);
+        JCIf jcIf = maker.If(cond, assignStatement,
+                maker.Exec(maker.Assign(var, maker.Literal(TypeTag.BOT, null))));
 
         return maker.Block(0, List.of(intVarDef, jcIf));
     }
 
+    /**
+     * Registers static array of given class in the class being processed.
+     * @param initMethod static method of the class returning the array, or null for empty table of IOUtils.CODE_TABLE_SIZE
+     * @return name of the field
+     */
+    private String staticTableField(String className, String suffix, String initMethod) {
+        String name = "egen$" + className.replace('.', '$') + "$" + suffix;
+        JCExpression init;
+        if (initMethod != null) {
+            init = maker.Apply(List.<JCExpression>nil(), maker.Select(ident(className), utils.getName(initMethod)),
+                    List.<JCExpression>nil());
+        } else {
+            init = maker.NewArray(ident(className),
+                    List.of(maker.Select(makeEgenIOUtilsSelect(), utils.getName("CODE_TABLE_SIZE"))), null);
+        }
+        AutoSerializableProcessor.addStaticField(maker.VarDef(maker.Modifiers(Flags.PRIVATE | Flags.STATIC | Flags.FINAL),
+                utils.getName(name), maker.TypeArray(ident(className)), init));
+        return name;
+    }
+
+    /**
+     * @return unsigned value of the variable to be placed into a bit field word, see {@link BitFieldPacker}
+     */
+    public JCExpression packedValueExpression() {
+        if (isEnumApplicable(variableDecl)) {
+            JCExpression ordinal = maker.Apply(List.<JCExpression>nil(), maker.Select(var, utils.getName("ordinal")),
+                    List.<JCExpression>nil());
+            return maker.Conditional(maker.Binary(Tag.NE, var, maker.Literal(TypeTag.BOT, null)),
+                    maker.Binary(Tag.PLUS, ordinal, maker.Literal(1L)), maker.Literal(0L));
+        }
+        if ("boolean".equals(variableDecl.vartype.toString()))
+            return maker.Conditional(var, maker.Literal(1L), maker.Literal(0L));
+
+        JCAnnotation range = AutoSerializableProcessor.getEgenAnnotation(variableDecl, BitFieldPacker.RANGE);
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("packRange"));
+        return maker.Apply(List.<JCExpression>nil(), expression, List.of(var,
+                maker.Literal(BitFieldPacker.rangeBound(range, "min")), maker.Literal(BitFieldPacker.rangeBound(range, "max"))));
+    }
+
+    /**
+     * Assigns the variable from given bits of a bit field word, see {@link BitFieldPacker}
+     */
+    public JCStatement unpackStatement(String wordName, int offset, int width) {
+        JCExpression bits = maker.Binary(Tag.BITAND,
+                offset == 0 ? ident(wordName) : maker.Binary(Tag.USR, ident(wordName), maker.Literal(offset)),
+                maker.Literal(BitFieldPacker.wordMask(width)));
+
+        if (isEnumApplicable(variableDecl)) {
+            String codeName = variableDecl.name.toString() + "ord";
+            String valuesField = staticTableField(qualifiedTypeName(variableDecl), "values", "values");
+            JCStatement codeDef = maker.VarDef(maker.Modifiers(0), utils.getName(codeName), maker.TypeIdent(TypeTag.INT),
+                    maker.TypeCast(maker.TypeIdent(TypeTag.INT), bits));
+            JCExpression value = maker.Conditional(maker.Binary(Tag.NE, ident(codeName), maker.Literal(0)),
+                    maker.Indexed(ident(valuesField), maker.Binary(Tag.MINUS, ident(codeName), maker.Literal(1))),
+                    maker.Literal(TypeTag.BOT, null));
+            return maker.Block(0, List.of(codeDef, maker.Exec(maker.Assign(var, value))));
+        }
+        if ("boolean".equals(variableDecl.vartype.toString()))
+            return maker.Exec(maker.Assign(var, maker.Binary(Tag.NE, bits, maker.Literal(0L))));
+
+        JCAnnotation range = AutoSerializableProcessor.getEgenAnnotation(variableDecl, BitFieldPacker.RANGE);
+        JCExpression value = maker.Binary(Tag.PLUS, maker.Literal(BitFieldPacker.rangeBound(range, "min")), bits);
+        return maker.Exec(maker.Assign(var, maker.TypeCast(maker.Type(variableDecl.vartype.type), value)));
+    }
+
     public JCStatement commonWriteStatement() {
         String typeName = variableDecl.vartype.toString();
+        if (isPrimitiveArray(typeName))
+            return bulkArrayWriteStatement(typeName);
+        if (bufferMode)
+            return bufferWriteStatement(typeName);
+
         if (isPrimitive(typeName)) {
             String capitalizedTypeName = Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
             JCExpression expression = ident("out");
@@ -339,6 +728,11 @@ public class StatementFactory {
 
     public JCStatement commonReadStatement() {
         String typeName = variableDecl.vartype.toString();
+        if (isPrimitiveArray(typeName))
+            return bulkArrayReadStatement(typeName);
+        if (bufferMode)
+            return bufferReadStatement(typeName);
+
         if (isPrimitive(typeName)) {
             String capitalizedTypeName = Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
             JCExpression expression = ident("in");
@@ -353,8 +747,147 @@ public class StatementFactory {
         }
     }
 
+    /**
+     * One-dimensional primitive arrays are copied in bulk by IOUtils instead of going through writeObject().
+     */
+    private JCStatement bulkArrayWriteStatement(String typeName) {
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("write" + bulkArrayMethodSuffix(typeName)));
+        expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("out"), var));
+        return maker.Exec(expression);
+    }
+
+    private JCStatement bulkArrayReadStatement(String typeName) {
+        JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("read" + bulkArrayMethodSuffix(typeName)));
+        expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("in")));
+        return maker.Exec(maker.Assign(var, expression));
+    }
+
+    private static String bulkArrayMethodSuffix(String typeName) {
+        return Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1, typeName.length() - 2) + "Array";
+    }
+
+    /**
+     * ByteBuffer has no notion of object graph, so besides primitives only strings (as compact UTF) and boxed
+     * primitives (after a null marker byte, like inlined values) can be written without a compact strategy.
+     */
+    private JCStatement bufferWriteStatement(String typeName) {
+        typeName = unqualifiedLangName(typeName);
+        if ("String".equals(typeName)) {
+            JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName("writeUTFString"));
+            return maker.Exec(maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("out"), var)));
+        }
+        String primitiveName = BOXED_PRIMITIVES.get(typeName);
+        if (primitiveName != null) {
+            JCBlock writeValue = maker.Block(0, List.of((JCStatement) maker.Exec(writeByteExpr(0)),
+                    bufferPrimitiveWriteStatement(primitiveName)));
+            return maker.If(maker.Binary(Tag.NE, var, maker.Literal(TypeTag.BOT, null)), writeValue,
+                    maker.Exec(writeByteExpr(-1)));
+        }
+        if (!isPrimitive(typeName))
+            throw unsupportedInBuffer();
+        return bufferPrimitiveWriteStatement(typeName);
+    }
+
+    private JCStatement bufferReadStatement(String typeName) {
+        typeName = unqualifiedLangName(typeName);
+        if ("String".equals(typeName)) {
+            String methodName = canonical || AutoSerializableProcessor.isCanonicalize() ? "readCanonicalUTFString" : "readUTFString";
+            JCExpression expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName(methodName));
+            return maker.Exec(maker.Assign(var, maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("in")))));
+        }
+        String primitiveName = BOXED_PRIMITIVES.get(typeName);
+        if (primitiveName != null) {
+            return maker.If(maker.Binary(Tag.NE, readByteExpr(), maker.Literal(-1)), bufferPrimitiveReadStatement(primitiveName),
+                    maker.Exec(maker.Assign(var, maker.Literal(TypeTag.BOT, null))));
+        }
+        if (!isPrimitive(typeName))
+            throw unsupportedInBuffer();
+        return bufferPrimitiveReadStatement(typeName);
+    }
+
+    /**
+     * Bytes are put directly, other primitives go through IOUtils, which writes them big-endian in any buffer order.
+     */
+    private JCStatement bufferPrimitiveWriteStatement(String typeName) {
+        JCExpression expression;
+        if ("byte".equals(typeName)) {
+            expression = maker.Select(ident("out"), utils.getName("put"));
+            expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(var));
+        } else {
+            expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName(bufferAccessorName("write", typeName)));
+            expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("out"), var));
+        }
+        return maker.Exec(expression);
+    }
+
+    private JCStatement bufferPrimitiveReadStatement(String typeName) {
+        JCExpression expression;
+        if ("byte".equals(typeName)) {
+            expression = maker.Select(ident("in"), utils.getName("get"));
+            expression = maker.Apply(List.<JCExpression>nil(), expression, List.<JCExpression>nil());
+        } else {
+            expression = maker.Select(makeEgenIOUtilsSelect(), utils.getName(bufferAccessorName("read", typeName)));
+            expression = maker.Apply(List.<JCExpression>nil(), expression, List.of(ident("in")));
+        }
+        return maker.Exec(maker.Assign(var, expression));
+    }
+
+    private static String unqualifiedLangName(String typeName) {
+        return typeName.startsWith("java.lang.") ? typeName.substring("java.lang.".length()) : typeName;
+    }
+
+    private static String bufferAccessorName(String prefix, String typeName) {
+        return prefix + Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
+    }
+
+    private void checkBufferStrategy(SerializationStrategyRecord strategyRecord) {
+        if (bufferMode && !isEgenStrategy(strategyRecord))
+            throw unsupportedInBuffer();
+    }
+
+    private static boolean isEgenStrategy(SerializationStrategyRecord strategyRecord) {
+        switch (strategyRecord.targetStrategy) {
+            case "CompactInt":
+            case "CompactLong":
+            case "UTFString":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private UnsupportedOperationException unsupportedInBuffer() {
+        return new UnsupportedOperationException("field " + variableDecl.name + " of type " + variableDecl.vartype +
+                " can't be encoded without object stream");
+    }
+
+    private JCExpression writeByteExpr(int value) {
+        JCExpression expression;
+        if (bufferMode) {
+            expression = maker.Select(ident("out"), utils.getName("put"));
+            return maker.Apply(List.<JCExpression>nil(), expression,
+                    List.of((JCExpression) maker.TypeCast(maker.TypeIdent(TypeTag.BYTE), maker.Literal(value))));
+        }
+        expression = maker.Select(ident("out"), utils.getName("writeByte"));
+        return maker.Apply(List.<JCExpression>nil(), expression, List.of((JCExpression) maker.Literal(value)));
+    }
+
+    private JCExpression readByteExpr() {
+        JCExpression expression = maker.Select(ident("in"), utils.getName(bufferMode ? "get" : "readByte"));
+        return maker.Apply(List.<JCExpression>nil(), expression, List.<JCExpression>nil());
+    }
+
+    private StatementFactory nested(JCVariableDecl localVar) {
+        StatementFactory factory = new StatementFactory(maker, utils, localVar, true, bufferMode);
+        factory.decimal = decimal;
+        factory.decimalPrecision = decimalPrecision;
+        factory.canonical = canonical;
+        factory.ascii = ascii;
+        return factory;
+    }
+
     public JCStatement collectionWriteStatement() {
-        JCExpression expression1 = makeDxlibIOUtilsSelect();
+        JCExpression expression1 = makeCompactIOUtilsSelect();
         expression1 = maker.Select(expression1, utils.getName("writeCompactInt"));
         JCExpression select = maker.Select(var, utils.getName("size"));
         expression1 = maker.Apply(List.<JCExpression>nil(), expression1,
@@ -364,9 +897,9 @@ public class StatementFactory {
         JCVariableDecl forEachLoopVar = maker.VarDef(maker.Modifiers(0), utils.getName(variableDecl.name.toString() + "elem"),
                 ((JCTypeApply) variableDecl.vartype).arguments.get(0), null);
         JCStatement statement2 = maker.ForeachLoop(forEachLoopVar, var,
-                maker.Block(0, List.of(new StatementFactory(maker, utils, forEachLoopVar, true).compactWriteStatement())));
+                maker.Block(0, List.of(nested(forEachLoopVar).compactWriteStatement())));
 
-        JCExpression writeMinusOne = makeDxlibIOUtilsSelect();
+        JCExpression writeMinusOne = makeCompactIOUtilsSelect();
         writeMinusOne = maker.Select(writeMinusOne, utils.getName("writeCompactInt"));
         writeMinusOne = maker.Apply(List.<JCExpression>nil(), writeMinusOne,
                 List.of(ident("out"), maker.Literal(-1)));
@@ -378,7 +911,7 @@ public class StatementFactory {
      * TODO: get rid of copypaste: merge with collectionWriteStatement()
      */
     public JCStatement arrayWriteStatement() {
-        JCExpression expression1 = makeDxlibIOUtilsSelect();
+        JCExpression expression1 = makeCompactIOUtilsSelect();
         expression1 = maker.Select(expression1, utils.getName("writeCompactInt"));
         JCExpression select = maker.Select(var, utils.getName("length"));
         expression1 = maker.Apply(List.<JCExpression>nil(), expression1, List.of(ident("out"), select));
@@ -387,9 +920,9 @@ public class StatementFactory {
         JCVariableDecl forEachLoopVar = maker.VarDef(maker.Modifiers(0), utils.getName(variableDecl.name.toString() + "elem"),
                 ((JCArrayTypeTree) variableDecl.vartype).elemtype, null);
         JCStatement statement2 = maker.ForeachLoop(forEachLoopVar, var,
-                maker.Block(0, List.of(new StatementFactory(maker, utils, forEachLoopVar, true).compactWriteStatement())));
+                maker.Block(0, List.of(nested(forEachLoopVar).compactWriteStatement())));
 
-        JCExpression writeMinusOne = makeDxlibIOUtilsSelect();
+        JCExpression writeMinusOne = makeCompactIOUtilsSelect();
         writeMinusOne = maker.Select(writeMinusOne, utils.getName("writeCompactInt"));
         writeMinusOne = maker.Apply(List.<JCExpression>nil(), writeMinusOne,
                 List.of(ident("out"), maker.Literal(-1)));
@@ -398,7 +931,7 @@ public class StatementFactory {
     }
 
     public JCStatement mapWriteStatement() {
-        JCExpression expression1 = makeDxlibIOUtilsSelect();
+        JCExpression expression1 = makeCompactIOUtilsSelect();
         expression1 = maker.Select(expression1, utils.getName("writeCompactInt"));
         JCExpression select = maker.Select(var, utils.getName("size"));
         expression1 = maker.Apply(List.<JCExpression>nil(), expression1,
@@ -420,16 +953,16 @@ public class StatementFactory {
         apply22 = maker.Apply(List.<JCExpression>nil(), apply22, List.<JCExpression>nil());
         JCVariableDecl statement22 = maker.VarDef(maker.Modifiers(0), utils.getName(variableDecl.name.toString() + "value"), ((JCTypeApply) variableDecl.vartype).arguments.get(1), apply22);
 
-        JCStatement write23 = new StatementFactory(maker, utils, statement21, true).compactWriteStatement();
+        JCStatement write23 = nested(statement21).compactWriteStatement();
 
-        JCStatement write24 = new StatementFactory(maker, utils, statement22, true).compactWriteStatement();
+        JCStatement write24 = nested(statement22).compactWriteStatement();
 
         JCExpression entrySetExpr = maker.Apply(List.<JCExpression>nil(),
                 maker.Select(var, utils.getName("entrySet")), List.<JCExpression>nil());
         JCStatement statement2 = maker.ForeachLoop(forEachLoopVar, entrySetExpr,
                 maker.Block(0, List.of(statement21, statement22, write23, write24)));
 
-        JCExpression writeMinusOne = makeDxlibIOUtilsSelect();
+        JCExpression writeMinusOne = makeCompactIOUtilsSelect();
         writeMinusOne = maker.Select(writeMinusOne, utils.getName("writeCompactInt"));
         writeMinusOne = maker.Apply(List.<JCExpression>nil(), writeMinusOne,
                 List.of(ident("out"), maker.Literal(-1)));
@@ -438,7 +971,7 @@ public class StatementFactory {
     }
 
     public JCStatement collectionReadStatement() {
-        JCExpression expression1 = makeDxlibIOUtilsSelect();
+        JCExpression expression1 = makeCompactIOUtilsSelect();
         expression1 = maker.Select(expression1, utils.getName("readCompactInt"));
         expression1 = maker.Apply(List.<JCExpression>nil(), expression1, List.of(ident("in")));
         JCVariableDecl statement1 = maker.VarDef(maker.Modifiers(0), utils.getName(variableDecl.name.toString() + "size"), maker.TypeIdent(TypeTag.INT), expression1);
@@ -450,7 +983,7 @@ public class StatementFactory {
 
         JCVariableDecl statement31 = maker.VarDef(maker.Modifiers(0), utils.getName(variableDecl.name.toString() + "elem"), typeApply.arguments.get(0), maker.Literal(TypeTag.BOT, null));
 
-        JCStatement statement32 = new StatementFactory(maker, utils, statement31, true).compactReadStatement();
+        JCStatement statement32 = nested(statement31).compactReadStatement();
 
         JCExpression select33 = maker.Select(var, utils.getName("add"));
         JCStatement statement33 = maker.Exec(maker.Apply(List.<JCExpression>nil(), select33,
@@ -469,7 +1002,7 @@ public class StatementFactory {
      * TODO: get rid of copypaste: merge with collectionReadStatement()
      */
     public JCStatement arrayReadStatement() {
-        JCExpression expression1 = makeDxlibIOUtilsSelect();
+        JCExpression expression1 = makeCompactIOUtilsSelect();
         expression1 = maker.Select(expression1, utils.getName("readCompactInt"));
         expression1 = maker.Apply(List.<JCExpression>nil(), expression1, List.of(ident("in")));
         JCVariableDecl statement1 = maker.VarDef(maker.Modifiers(0), utils.getName(variableDecl.name.toString() + "size"), maker.TypeIdent(TypeTag.INT), expression1);
@@ -481,7 +1014,7 @@ public class StatementFactory {
 
         JCVariableDecl statement31 = maker.VarDef(maker.Modifiers(0), utils.getName(variableDecl.name.toString() + "elem"), arrayTypeTree.elemtype, null);
 
-        JCStatement statement32 = new StatementFactory(maker, utils, statement31, true).compactReadStatement();
+        JCStatement statement32 = nested(statement31).compactReadStatement();
 
         JCStatement statement33 = maker.Exec(maker.Assign(maker.Indexed(var,
                 ident(variableDecl.name.toString() + "index")), ident(variableDecl.name.toString() + "elem")));
@@ -496,7 +1029,7 @@ public class StatementFactory {
     }
 
     public JCStatement mapReadStatement() {
-        JCExpression expression1 = makeDxlibIOUtilsSelect();
+        JCExpression expression1 = makeCompactIOUtilsSelect();
         expression1 = maker.Select(expression1, utils.getName("readCompactInt"));
         expression1 = maker.Apply(List.<JCExpression>nil(), expression1, List.of(ident("in")));
         JCVariableDecl statement1 = maker.VarDef(maker.Modifiers(0), utils.getName(variableDecl.name.toString() + "size"), maker.TypeIdent(TypeTag.INT), expression1);
@@ -508,11 +1041,11 @@ public class StatementFactory {
 
         JCVariableDecl statement31 = maker.VarDef(maker.Modifiers(0), utils.getName(variableDecl.name.toString() + "key"), typeApply.arguments.get(0), maker.Literal(TypeTag.BOT, null));
 
-        JCStatement statement32 = new StatementFactory(maker, utils, statement31, true).compactReadStatement();
+        JCStatement statement32 = nested(statement31).compactReadStatement();
 
         JCVariableDecl statement33 = maker.VarDef(maker.Modifiers(0), utils.getName(variableDecl.name.toString() + "value"), typeApply.arguments.get(1), maker.Literal(TypeTag.BOT, null));
 
-        JCStatement statement34 = new StatementFactory(maker, utils, statement33, true).compactReadStatement();
+        JCStatement statement34 = nested(statement33).compactReadStatement();
 
         JCExpression select35 = maker.Select(var, utils.getName("put"));
         JCStatement statement35 = maker.Exec(maker.Apply(List.<JCExpression>nil(), select35,
@@ -528,16 +1061,20 @@ public class StatementFactory {
     }
 
     public static boolean isInlineApplicable(JCVariableDecl var) {
-        for (javax.lang.model.element.Element e : AutoSerializableProcessor.getClasses()) {
-            if (e.toString().equals(var.vartype.type.toString())) {
-                return true;
-            }
-        }
-        return false;
+        Type type = var.vartype.type;
+        return type != null && type.hasTag(TypeTag.CLASS) && AutoSerializableProcessor.getAutoSerializable(type.tsym) != null;
     }
 
     public static boolean isOrdinalApplicable(JCVariableDecl var) {
-        return AutoSerializableProcessor.getOrdinals().contains(resolveFullClassName(var));
+        return isEnumApplicable(var) || AutoSerializableProcessor.getOrdinals().contains(resolveFullClassName(var));
+    }
+
+    /**
+     * Java enums are written as their ordinal() and read back from values() array cached in a static field.
+     */
+    public static boolean isEnumApplicable(JCVariableDecl var) {
+        Type type = var.vartype.type;
+        return type != null && type.tsym != null && !type.hasTag(TypeTag.ARRAY) && (type.tsym.flags() & Flags.ENUM) != 0;
     }
 
     public static boolean isCollectionApplicable(JCVariableDecl var) {
@@ -575,6 +1112,24 @@ public class StatementFactory {
         return expression;
     }
 
+    /**
+     * Compact encodings are taken from EGEN's own IOUtils unless dxlib runtime is requested for object streams.
+     */
+    private JCExpression makeCompactIOUtilsSelect() {
+        return usesEgenRuntime() ? makeEgenIOUtilsSelect() : makeDxlibIOUtilsSelect();
+    }
+
+    private boolean usesEgenRuntime() {
+        return bufferMode || !AutoSerializableProcessor.isDxlibRuntime();
+    }
+
+    /**
+     * Strategies beyond compact numbers and strings are still resolved against dxlib's IOUtil.
+     */
+    private JCExpression makeStrategyIOUtilsSelect(SerializationStrategyRecord strategyRecord) {
+        return isEgenStrategy(strategyRecord) ? makeCompactIOUtilsSelect() : makeDxlibIOUtilsSelect();
+    }
+
     private JCExpression makeDxlibIOUtilsSelect() {
         JCExpression expression = ident("com");
         expression = maker.Select(expression, utils.getName("devexperts"));
@@ -584,6 +1139,11 @@ public class StatementFactory {
     }
 
 
+    private boolean isPrimitiveArray(String typeName) {
+        return typeName.endsWith("[]") && !"boolean[]".equals(typeName) &&
+                isPrimitive(typeName.substring(0, typeName.length() - 2));
+    }
+
     private boolean isPrimitive(String typeName) {
         return "boolean".equals(typeName) ||
                 "char".equals(typeName) ||
@@ -630,6 +1190,13 @@ public class StatementFactory {
             return maker.Apply(List.<JCExpression>nil(), resultExpr, List.of((JCExpression) maker.Literal(value)));
         }
     }
+    /**
+     * @return qualified name of variable's type erasure, suitable for class literals and array creation
+     */
+    private static String qualifiedTypeName(JCVariableDecl var) {
+        return var.vartype.type.tsym.getQualifiedName().toString();
+    }
+
     private static String resolveFullClassName(JCVariableDecl var) {
         JCExpression expression = var.vartype;
         if (expression instanceof JCIdent) {
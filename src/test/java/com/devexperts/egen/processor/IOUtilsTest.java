@@ -0,0 +1,435 @@
+package com.devexperts.egen.processor;
+
+/*
+ * #%L
+ * EGEN - Externalizable implementation generator
+ * %%
+ * Copyright (C) 2014 - 2020 Devexperts, LLC
+ * %%
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of {@link IOUtils} codecs through streams and through buffers of both byte orders.
+ * Values are random series of several distributions plus empty, null and extreme values.
+ */
+public class IOUtilsTest {
+    private static final ByteOrder[] ORDERS = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+    private static final int[] LENGTHS = {0, 1, 2, 17, 850, 1000, 10000};
+
+    private static final double[] SPECIAL_DOUBLES = {0.0, -0.0, 1.0, -1.0, 0.1, 1e-300, 1e300, Math.PI,
+        Double.MIN_VALUE, Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN,
+        Double.longBitsToDouble(0x7ff8000000000123L)};
+
+    @Test
+    public void testCompactInt() throws IOException {
+        for (long v : boundaries()) {
+            int i = (int) v;
+            check(i, IOUtils::writeCompactInt, IOUtils::readCompactInt, IOUtils::writeCompactInt, IOUtils::readCompactInt,
+                String::valueOf);
+        }
+    }
+
+    @Test
+    public void testCompactLong() throws IOException {
+        for (long v : boundaries()) {
+            check(v, IOUtils::writeCompactLong, IOUtils::readCompactLong, IOUtils::writeCompactLong,
+                IOUtils::readCompactLong, String::valueOf);
+        }
+    }
+
+    @Test
+    public void testCompactIntArray() throws IOException {
+        for (int[] v : intArrays()) {
+            check(v, IOUtils::writeCompactIntArray, IOUtils::readCompactIntArray, IOUtils::writeCompactIntArray,
+                IOUtils::readCompactIntArray, Arrays::toString);
+        }
+    }
+
+    @Test
+    public void testCompactLongArray() throws IOException {
+        for (long[] v : longArrays()) {
+            check(v, IOUtils::writeCompactLongArray, IOUtils::readCompactLongArray, IOUtils::writeCompactLongArray,
+                IOUtils::readCompactLongArray, Arrays::toString);
+        }
+    }
+
+    @Test
+    public void testDeltaIntArray() throws IOException {
+        for (int[] v : intArrays()) {
+            check(v, IOUtils::writeDeltaIntArray, IOUtils::readDeltaIntArray, IOUtils::writeDeltaIntArray,
+                IOUtils::readDeltaIntArray, Arrays::toString);
+        }
+    }
+
+    @Test
+    public void testDeltaLongArray() throws IOException {
+        for (long[] v : longArrays()) {
+            check(v, IOUtils::writeDeltaLongArray, IOUtils::readDeltaLongArray, IOUtils::writeDeltaLongArray,
+                IOUtils::readDeltaLongArray, Arrays::toString);
+        }
+    }
+
+    @Test
+    public void testDeltaOfDeltaIntArray() throws IOException {
+        for (int[] v : intArrays()) {
+            check(v, IOUtils::writeDeltaOfDeltaIntArray, IOUtils::readDeltaOfDeltaIntArray,
+                IOUtils::writeDeltaOfDeltaIntArray, IOUtils::readDeltaOfDeltaIntArray, Arrays::toString);
+        }
+    }
+
+    @Test
+    public void testDeltaOfDeltaLongArray() throws IOException {
+        for (long[] v : longArrays()) {
+            check(v, IOUtils::writeDeltaOfDeltaLongArray, IOUtils::readDeltaOfDeltaLongArray,
+                IOUtils::writeDeltaOfDeltaLongArray, IOUtils::readDeltaOfDeltaLongArray, Arrays::toString);
+        }
+    }
+
+    @Test
+    public void testFixedWidth() throws IOException {
+        for (long v : boundaries()) {
+            IOUtilsTest.<Short>check((short) v, DataOutput::writeShort, DataInput::readShort, IOUtils::writeShort, IOUtils::readShort,
+                String::valueOf);
+            IOUtilsTest.<Character>check((char) v, DataOutput::writeChar, DataInput::readChar, IOUtils::writeChar, IOUtils::readChar,
+                c -> String.valueOf((int) c));
+            check((int) v, DataOutput::writeInt, DataInput::readInt, IOUtils::writeInt, IOUtils::readInt,
+                String::valueOf);
+            check(v, DataOutput::writeLong, DataInput::readLong, IOUtils::writeLong, IOUtils::readLong,
+                String::valueOf);
+        }
+        for (double v : SPECIAL_DOUBLES) {
+            check(v, DataOutput::writeDouble, DataInput::readDouble, IOUtils::writeDouble, IOUtils::readDouble,
+                d -> String.valueOf(Double.doubleToLongBits(d)));
+            check((float) v, DataOutput::writeFloat, DataInput::readFloat, IOUtils::writeFloat, IOUtils::readFloat,
+                f -> String.valueOf(Float.floatToIntBits(f)));
+        }
+    }
+
+    @Test
+    public void testBulkArrays() throws IOException {
+        for (long[] v : longArrays()) {
+            check(v, IOUtils::writeLongArray, IOUtils::readLongArray, IOUtils::writeLongArray,
+                IOUtils::readLongArray, Arrays::toString);
+        }
+        for (int[] v : intArrays()) {
+            check(v, IOUtils::writeIntArray, IOUtils::readIntArray, IOUtils::writeIntArray,
+                IOUtils::readIntArray, Arrays::toString);
+            short[] shorts = v == null ? null : new short[v.length];
+            char[] chars = v == null ? null : new char[v.length];
+            float[] floats = v == null ? null : new float[v.length];
+            for (int i = 0; v != null && i < v.length; i++) {
+                shorts[i] = (short) v[i];
+                chars[i] = (char) v[i];
+                floats[i] = Float.intBitsToFloat(v[i]);
+            }
+            check(shorts, IOUtils::writeShortArray, IOUtils::readShortArray, IOUtils::writeShortArray,
+                IOUtils::readShortArray, Arrays::toString);
+            check(chars, IOUtils::writeCharArray, IOUtils::readCharArray, IOUtils::writeCharArray,
+                IOUtils::readCharArray, a -> a == null ? "null" : Arrays.toString(new String(a).chars().toArray()));
+            check(floats, IOUtils::writeFloatArray, IOUtils::readFloatArray, IOUtils::writeFloatArray,
+                IOUtils::readFloatArray, a -> a == null ? "null" : rawBits(a));
+        }
+        for (double[] v : doubleArrays()) {
+            check(v, IOUtils::writeDoubleArray, IOUtils::readDoubleArray, IOUtils::writeDoubleArray,
+                IOUtils::readDoubleArray, IOUtilsTest::rawBits);
+        }
+    }
+
+    @Test
+    public void testCompactNumbersIgnoreBufferOrder() {
+        ByteBuffer big = ByteBuffer.allocate(16).order(ByteOrder.BIG_ENDIAN);
+        ByteBuffer little = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        IOUtils.writeCompactInt(big, 0x123456);
+        IOUtils.writeCompactInt(little, 0x123456);
+        IOUtils.writeCompactLong(big, -0x123456789AL);
+        IOUtils.writeCompactLong(little, -0x123456789AL);
+        big.flip();
+        little.flip();
+        assertEquals(big, little);
+        assertEquals(0x123456, IOUtils.readCompactInt(little));
+        assertEquals(-0x123456789AL, IOUtils.readCompactLong(little));
+    }
+
+    @Test
+    public void testXorCompressedDoubleArray() throws IOException {
+        for (double[] v : doubleArrays()) {
+            check(v, IOUtils::writeXorCompressedDoubleArray, IOUtils::readXorCompressedDoubleArray,
+                IOUtils::writeXorCompressedDoubleArray, IOUtils::readXorCompressedDoubleArray,
+                IOUtilsTest::rawBits);
+        }
+    }
+
+    @Test
+    public void testXorCompressedArraysShareNoState() throws IOException {
+        // larger array is written while the smaller one is still to be read from the same thread
+        double[] small = randomWalk(new Random(1), 850);
+        double[] large = randomWalk(new Random(2), 100000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        IOUtils.writeXorCompressedDoubleArray(out, small);
+        IOUtils.writeXorCompressedDoubleArray(out, large);
+        IOUtils.writeXorCompressedDoubleArray(out, small);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(rawBits(small), rawBits(IOUtils.readXorCompressedDoubleArray(in)));
+        assertEquals(rawBits(large), rawBits(IOUtils.readXorCompressedDoubleArray(in)));
+        assertEquals(rawBits(small), rawBits(IOUtils.readXorCompressedDoubleArray(in)));
+    }
+
+    @Test
+    public void testDecimalDouble() throws IOException {
+        for (double v : decimals()) {
+            check(v, IOUtils::writeDecimalDouble, IOUtils::readDecimalDouble, IOUtils::writeDecimalDouble,
+                IOUtils::readDecimalDouble, d -> String.valueOf(Double.doubleToLongBits(d)));
+        }
+    }
+
+    @Test
+    public void testDecimalFloat() throws IOException {
+        for (double d : decimals()) {
+            float v = (float) d;
+            check(v, IOUtils::writeDecimalFloat, IOUtils::readDecimalFloat, IOUtils::writeDecimalFloat,
+                IOUtils::readDecimalFloat, f -> String.valueOf(Float.floatToIntBits(f)));
+        }
+    }
+
+    @Test
+    public void testDecimalPrecision() throws IOException {
+        for (int precision = 0; precision <= IOUtils.MAX_DECIMAL_SCALE; precision++) {
+            Random random = new Random(precision);
+            for (int i = 0; i < 1000; i++) {
+                double v = (random.nextDouble() - 0.5) * 1000;
+                double expected = Math.rint(v * Math.pow(10, precision)) / Math.pow(10, precision);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                IOUtils.writeDecimalDouble(new DataOutputStream(bytes), v, precision);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+                assertEquals(expected, IOUtils.readDecimalDouble(in), 0);
+                for (ByteOrder order : ORDERS) {
+                    ByteBuffer buffer = ByteBuffer.allocate(bytes.size()).order(order);
+                    IOUtils.writeDecimalDouble(buffer, v, precision);
+                    buffer.flip();
+                    assertEquals(expected, IOUtils.readDecimalDouble(buffer), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDecimalObjects() throws IOException {
+        for (Double v : new Double[] {null, 1.25, -0.0, Double.NaN}) {
+            check(v, (out, d) -> IOUtils.writeDecimalDoubleObject(out, d, -1), IOUtils::readDecimalDoubleObject,
+                (out, d) -> IOUtils.writeDecimalDoubleObject(out, d, -1), IOUtils::readDecimalDoubleObject,
+                String::valueOf);
+        }
+        for (Float v : new Float[] {null, 1.25f, -0.0f, Float.NaN}) {
+            check(v, (out, f) -> IOUtils.writeDecimalFloatObject(out, f, -1), IOUtils::readDecimalFloatObject,
+                (out, f) -> IOUtils.writeDecimalFloatObject(out, f, -1), IOUtils::readDecimalFloatObject,
+                String::valueOf);
+        }
+    }
+
+    @Test
+    public void testDeltaDoubleArray() throws IOException {
+        for (double[] v : doubleArrays()) {
+            check(v, IOUtils::writeDeltaDoubleArray, IOUtils::readDeltaDoubleArray, IOUtils::writeDeltaDoubleArray,
+                IOUtils::readDeltaDoubleArray, IOUtilsTest::bits);
+        }
+    }
+
+    // ========== Round trip ==========
+
+    private interface StreamWriter<T> {
+        void write(DataOutput out, T v) throws IOException;
+    }
+
+    private interface StreamReader<T> {
+        T read(DataInput in) throws IOException;
+    }
+
+    private interface BufferWriter<T> {
+        void write(ByteBuffer out, T v);
+    }
+
+    /**
+     * Writes value to stream and buffers of both orders and checks that it's read back from each of them.
+     * Buffer codecs shall produce the same bytes as stream ones regardless of buffer order.
+     *
+     * @param show converts values to strings compared by the check
+     */
+    private static <T> void check(T v, StreamWriter<T> streamWriter, StreamReader<T> streamReader,
+        BufferWriter<T> bufferWriter, Function<ByteBuffer, T> bufferReader, Function<T, String> show)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        streamWriter.write(out, v);
+        out.writeByte(42); // codec shall read exactly what it wrote
+        byte[] written = bytes.toByteArray();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(written));
+        assertEquals(show.apply(v), show.apply(streamReader.read(in)));
+        assertEquals(42, in.readByte());
+
+        for (ByteOrder order : ORDERS) {
+            ByteBuffer buffer = ByteBuffer.allocate(written.length + 16).order(order);
+            buffer.position(3); // not aligned
+            bufferWriter.write(buffer, v);
+            buffer.put((byte) 42);
+            buffer.flip();
+            buffer.position(3);
+            assertEquals("bytes in " + order + " buffer", ByteBuffer.wrap(written), buffer.slice());
+            assertEquals(order.toString(), show.apply(v), show.apply(bufferReader.apply(buffer)));
+            assertEquals(42, buffer.get());
+            assertFalse(buffer.hasRemaining());
+        }
+    }
+
+    private static String rawBits(double[] v) {
+        if (v == null)
+            return "null";
+        long[] bits = new long[v.length];
+        for (int i = 0; i < v.length; i++)
+            bits[i] = Double.doubleToRawLongBits(v[i]);
+        return Arrays.toString(bits);
+    }
+
+    private static String rawBits(float[] v) {
+        int[] bits = new int[v.length];
+        for (int i = 0; i < v.length; i++)
+            bits[i] = Float.floatToRawIntBits(v[i]);
+        return Arrays.toString(bits);
+    }
+
+    private static String bits(double[] v) {
+        if (v == null)
+            return "null";
+        long[] bits = new long[v.length];
+        for (int i = 0; i < v.length; i++)
+            bits[i] = Double.doubleToLongBits(v[i]);
+        return Arrays.toString(bits);
+    }
+
+    // ========== Values ==========
+
+    /**
+     * @return powers of two with their neighbours, which cross every varint length boundary
+     */
+    private static long[] boundaries() {
+        List<Long> values = new ArrayList<>();
+        for (int shift = 0; shift < 64; shift++) {
+            for (long d = -1; d <= 1; d++) {
+                values.add((1L << shift) + d);
+                values.add(-(1L << shift) + d);
+            }
+        }
+        values.add(Long.MIN_VALUE);
+        values.add(Long.MAX_VALUE);
+        values.add((long) Integer.MIN_VALUE);
+        values.add((long) Integer.MAX_VALUE);
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static List<int[]> intArrays() {
+        List<int[]> arrays = new ArrayList<>();
+        for (long[] v : longArrays(100000000)) {
+            arrays.add(v == null ? null : Arrays.stream(v).mapToInt(x -> (int) x).toArray());
+        }
+        arrays.add(Arrays.stream(boundaries()).mapToInt(x -> (int) x).toArray());
+        return arrays;
+    }
+
+    private static List<long[]> longArrays() {
+        List<long[]> arrays = longArrays(1580000000000L);
+        arrays.add(boundaries());
+        return arrays;
+    }
+
+    /**
+     * @return small, random, monotonic and decreasing series of each length, plus null
+     */
+    private static List<long[]> longArrays(long start) {
+        List<long[]> arrays = new ArrayList<>();
+        arrays.add(null);
+        Random random = new Random(start);
+        for (int length : LENGTHS) {
+            long[] small = new long[length];
+            long[] any = new long[length];
+            long[] monotonic = new long[length];
+            long[] decreasing = new long[length];
+            long up = start;
+            long down = start;
+            for (int i = 0; i < length; i++) {
+                small[i] = random.nextInt(64);
+                any[i] = random.nextLong();
+                monotonic[i] = up += random.nextInt(1000);
+                decreasing[i] = down -= random.nextInt(1000);
+            }
+            arrays.addAll(Arrays.asList(small, any, monotonic, decreasing));
+        }
+        return arrays;
+    }
+
+    /**
+     * @return price-like series, random bits and repeats of each length, special values and null
+     */
+    private static List<double[]> doubleArrays() {
+        List<double[]> arrays = new ArrayList<>();
+        arrays.add(null);
+        arrays.add(SPECIAL_DOUBLES);
+        Random random = new Random(1);
+        for (int length : LENGTHS) {
+            double[] any = new double[length];
+            double[] repeats = new double[length];
+            for (int i = 0; i < length; i++) {
+                any[i] = Double.longBitsToDouble(random.nextLong());
+                repeats[i] = i % 10 < 7 ? 1.5 : SPECIAL_DOUBLES[i % SPECIAL_DOUBLES.length];
+            }
+            arrays.addAll(Arrays.asList(randomWalk(random, length), any, repeats));
+        }
+        arrays.add(randomWalk(random, 100000));
+        return arrays;
+    }
+
+    private static double[] randomWalk(Random random, int length) {
+        double[] v = new double[length];
+        long price = 10000;
+        for (int i = 0; i < length; i++) {
+            price += random.nextInt(21) - 10;
+            v[i] = price / 100.0;
+        }
+        return v;
+    }
+
+    private static double[] decimals() {
+        double[] v = Arrays.copyOf(SPECIAL_DOUBLES, SPECIAL_DOUBLES.length + 1000);
+        Random random = new Random(1);
+        for (int i = SPECIAL_DOUBLES.length; i < v.length; i++) {
+            switch (i % 3) {
+                case 0:
+                    v[i] = random.nextInt(1000000) / Math.pow(10, random.nextInt(IOUtils.MAX_DECIMAL_SCALE + 1));
+                    break;
+                case 1:
+                    v[i] = -random.nextInt(100000) / 100.0;
+                    break;
+                default:
+                    v[i] = random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+            }
+        }
+        return v;
+    }
+}